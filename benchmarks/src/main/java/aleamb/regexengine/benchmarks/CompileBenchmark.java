@@ -0,0 +1,151 @@
+package aleamb.regexengine.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.parser.ASTNode;
+import aleamb.regexengine.parser.LexicalAnalyzer;
+import aleamb.regexengine.parser.Parser;
+
+/**
+ * Time to compile every expression of the corpus, phase by phase.
+ * 
+ * Each phase starts from the output of the previous one, computed once at setup, so its score
+ * only measures that phase: lexer, parser (which also runs the lexer), Thompson construction,
+ * subset construction of the search and reverse automata, minimization and flattening to
+ * transition tables. {@link #compile(Blackhole)} measures the whole of
+ * {@link RegexEngine#compile(String, RegexOptions)} in {@link ExecutionMode#DFA} mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+
+    private String[] expressions;
+
+    // output of each phase
+    private ASTNode[] syntaxTrees;
+    private Automaton[] nfas;
+    private Automaton[] reverseNfas;
+    private Automaton[] dfas;
+    private Automaton[] reverseDfas;
+    private Automaton[] minimalDfas;
+
+    private RegexOptions options;
+
+    @Setup
+    public void setup() throws IOException {
+
+        List<String> corpus = Corpus.expressions();
+        int count = corpus.size();
+        expressions = corpus.toArray(new String[count]);
+        syntaxTrees = new ASTNode[count];
+        nfas = new Automaton[count];
+        reverseNfas = new Automaton[count];
+        dfas = new Automaton[count];
+        reverseDfas = new Automaton[count];
+        minimalDfas = new Automaton[count];
+
+        for (int i = 0; i < count; i++) {
+            syntaxTrees[i] = new Parser(new LexicalAnalyzer(expressions[i])).analyze();
+            nfas[i] = AutomatonBuilder.generateFromAST(syntaxTrees[i]);
+            reverseNfas[i] = AutomatonBuilder.generateReverseNFA(nfas[i]);
+            dfas[i] = AutomatonBuilder.generateSearchDFA(nfas[i]);
+            reverseDfas[i] = AutomatonBuilder.generateDFAFromNFA(reverseNfas[i]);
+            minimalDfas[i] = AutomatonBuilder.minimizeDFA(dfas[i]);
+        }
+
+        options = new RegexOptions();
+        options.setExecutionMode(ExecutionMode.DFA);
+    }
+
+    @Benchmark
+    public void lexer(Blackhole blackhole) {
+
+        for (String expression : expressions) {
+            LexicalAnalyzer lexer = new LexicalAnalyzer(expression);
+            while (lexer.readToken()) {
+                blackhole.consume(lexer.getToken());
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+
+        for (String expression : expressions) {
+            blackhole.consume(new Parser(new LexicalAnalyzer(expression)).analyze());
+        }
+    }
+
+    @Benchmark
+    public void generateFromAST(Blackhole blackhole) {
+
+        for (ASTNode syntaxTree : syntaxTrees) {
+            blackhole.consume(AutomatonBuilder.generateFromAST(syntaxTree));
+        }
+    }
+
+    @Benchmark
+    public void generateSearchDFA(Blackhole blackhole) {
+
+        for (Automaton nfa : nfas) {
+            blackhole.consume(AutomatonBuilder.generateSearchDFA(nfa));
+        }
+    }
+
+    @Benchmark
+    public void generateDFAFromNFA(Blackhole blackhole) {
+
+        for (Automaton reverseNfa : reverseNfas) {
+            blackhole.consume(AutomatonBuilder.generateDFAFromNFA(reverseNfa));
+        }
+    }
+
+    @Benchmark
+    public void minimizeDFA(Blackhole blackhole) {
+
+        for (int i = 0; i < dfas.length; i++) {
+            blackhole.consume(AutomatonBuilder.minimizeDFA(dfas[i]));
+            blackhole.consume(AutomatonBuilder.minimizeDFA(reverseDfas[i]));
+        }
+    }
+
+    @Benchmark
+    public void generateTransitionTable(Blackhole blackhole) {
+
+        for (Automaton dfa : minimalDfas) {
+            blackhole.consume(AutomatonBuilder.generateTransitionTable(dfa));
+        }
+    }
+
+    @Benchmark
+    public void compile(Blackhole blackhole) {
+
+        for (String expression : expressions) {
+            blackhole.consume(RegexEngine.compile(expression, options));
+        }
+    }
+
+}
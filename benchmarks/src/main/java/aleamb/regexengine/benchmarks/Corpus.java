@@ -0,0 +1,77 @@
+package aleamb.regexengine.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Expressions and text shared by the benchmarks.
+ * 
+ * Expressions are the lines of <code>regex.txt</code> and text is built from
+ * <code>text.txt</code>, both at the root of the project. They are read from the directory of
+ * system property {@link #DIRECTORY_PROPERTY}, or from the parent directory or the current one.
+ * JMH runs benchmarks in forked JVMs, so the property must be passed with
+ * <code>-jvmArgsAppend</code>.
+ */
+final class Corpus {
+
+    /**
+     * System property with the directory of <code>regex.txt</code> and <code>text.txt</code>.
+     */
+    static final String DIRECTORY_PROPERTY = "aleamb.regexengine.corpus";
+
+    private Corpus() {
+    }
+
+    /**
+     * @return expressions of <code>regex.txt</code>, without empty lines.
+     */
+    static List<String> expressions() throws IOException {
+
+        List<String> expressions = new ArrayList<String>();
+        for (String line : FileUtils.readLines(file("regex.txt"), "UTF-8")) {
+            if (line.length() > 0) {
+                expressions.add(line);
+            }
+        }
+        return expressions;
+    }
+
+    /**
+     * Repeats <code>text.txt</code> up to a length.
+     * 
+     * @param length number of characters.
+     * @return text of the given length.
+     */
+    static String text(int length) throws IOException {
+
+        String text = FileUtils.readFileToString(file("text.txt"), "UTF-8");
+        StringBuilder builder = new StringBuilder(length + text.length());
+        while (builder.length() < length) {
+            builder.append(text);
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    private static File file(String name) throws IOException {
+
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory != null) {
+            return new File(directory, name);
+        }
+        File parent = new File("..", name);
+        if (parent.isFile()) {
+            return parent;
+        }
+        File current = new File(name);
+        if (current.isFile()) {
+            return current;
+        }
+        throw new IOException(name + " not found. Set system property " + DIRECTORY_PROPERTY);
+    }
+
+}
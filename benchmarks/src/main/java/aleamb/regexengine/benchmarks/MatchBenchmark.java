@@ -0,0 +1,157 @@
+package aleamb.regexengine.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatcher;
+import aleamb.regexengine.RegexOptions;
+
+/**
+ * Time to find every match of every expression of the corpus in a text, with
+ * {@link java.util.regex.Pattern} as baseline.
+ * 
+ * Input sizes are 1 KB, 64 KB and 8 MB, built by repeating <code>text.txt</code>. Execution
+ * mode defaults to {@link ExecutionMode#AUTO}; other modes are measured with
+ * <code>-p mode=DFA,LAZY_DFA,NFA</code>.
+ * 
+ * <code>java.util.regex</code> returns leftmost-first matches instead of leftmost-longest ones,
+ * so number of matches may differ for some expressions. Scores compare the work needed to scan
+ * the same text, not the same results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Param({ "1024", "65536", "8388608" })
+    private int size;
+
+    @Param({ "AUTO" })
+    private ExecutionMode mode;
+
+    private char[] buffer;
+
+    private String text;
+
+    // text as a String, a StringBuilder and a direct CharBuffer
+    private CharSequence[] sequences;
+
+    private Regex[] regexes;
+
+    private Pattern[] patterns;
+
+    @Setup
+    public void setup() throws IOException {
+
+        text = Corpus.text(size);
+        buffer = text.toCharArray();
+        CharBuffer directBuffer = ByteBuffer.allocateDirect(2 * text.length()).asCharBuffer();
+        directBuffer.put(text).flip();
+        sequences = new CharSequence[] { text, new StringBuilder(text), directBuffer };
+
+        RegexOptions options = new RegexOptions();
+        options.setExecutionMode(mode);
+        options.setExpectedInputLength(size);
+
+        List<String> expressions = Corpus.expressions();
+        regexes = new Regex[expressions.size()];
+        patterns = new Pattern[expressions.size()];
+        for (int i = 0; i < regexes.length; i++) {
+            regexes[i] = RegexEngine.compile(expressions.get(i), options);
+            patterns[i] = Pattern.compile(expressions.get(i));
+        }
+    }
+
+    /**
+     * Every match with its bounds, through {@link Regex#match(char[], aleamb.regexengine.RegexMatchResult)}.
+     */
+    @Benchmark
+    public void regexEngine(Blackhole blackhole) {
+
+        for (Regex regex : regexes) {
+            RegexMatcher matcher = regex.matcher(buffer);
+            while (matcher.find()) {
+                blackhole.consume(matcher.end());
+            }
+        }
+    }
+
+    /**
+     * Same input as a String, read with {@link CharSequence#charAt(int)}.
+     */
+    @Benchmark
+    public void regexEngineString(Blackhole blackhole) {
+
+        for (Regex regex : regexes) {
+            RegexMatcher matcher = regex.matcher(text);
+            while (matcher.find()) {
+                blackhole.consume(matcher.end());
+            }
+        }
+    }
+
+    /**
+     * Same input as a String, a StringBuilder and a direct CharBuffer in turn, so reads of
+     * sequences see several types in the same run. Compare with three times
+     * {@link #regexEngineString(Blackhole)}.
+     */
+    @Benchmark
+    public void regexEngineMixed(Blackhole blackhole) {
+
+        for (Regex regex : regexes) {
+            for (CharSequence input : sequences) {
+                RegexMatcher matcher = regex.matcher(input);
+                while (matcher.find()) {
+                    blackhole.consume(matcher.end());
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of matches only, with {@link Regex#count(char[])}.
+     */
+    @Benchmark
+    public void regexEngineCount(Blackhole blackhole) {
+
+        for (Regex regex : regexes) {
+            blackhole.consume(regex.count(buffer));
+        }
+    }
+
+    @Benchmark
+    public void javaRegex(Blackhole blackhole) {
+
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                blackhole.consume(matcher.end());
+            }
+        }
+    }
+
+}
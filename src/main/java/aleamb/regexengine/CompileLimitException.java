@@ -0,0 +1,46 @@
+package aleamb.regexengine;
+
+/**
+ * Thrown by compile when a regex exceeds a limit of {@link RegexOptions}: number of states of its
+ * automata or compile time.
+ */
+public class CompileLimitException extends RegexException {
+
+    private static final long serialVersionUID = -2786502213795305347L;
+
+    /**
+     * Limits of compilation.
+     */
+    public enum Limit {
+
+        /**
+         * Number of states of the nondeterministic automaton.
+         */
+        NFA_STATES,
+
+        /**
+         * Number of states of a deterministic automaton.
+         */
+        DFA_STATES,
+
+        /**
+         * Compile time.
+         */
+        TIME
+    }
+
+    private final Limit limit;
+
+    public CompileLimitException(Limit pLimit, String message) {
+        super(message);
+        limit = pLimit;
+    }
+
+    /**
+     * @return limit exceeded.
+     */
+    public Limit getLimit() {
+        return limit;
+    }
+
+}
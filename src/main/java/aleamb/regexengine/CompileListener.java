@@ -0,0 +1,18 @@
+package aleamb.regexengine;
+
+/**
+ * Receives the statistics of each compilation. Set with
+ * {@link RegexOptions#setCompileListener(CompileListener)} to publish them as metrics, for
+ * example a timer of {@link CompileStats#getTotalNanos()} and a gauge of
+ * {@link CompileStats#getDFAStateCount()}.
+ */
+public interface CompileListener {
+
+    /**
+     * Called after an expression is compiled, in the thread that compiled it.
+     * 
+     * @param stats statistics of compilation.
+     */
+    void compiled(CompileStats stats);
+
+}
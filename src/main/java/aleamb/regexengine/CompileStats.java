@@ -0,0 +1,191 @@
+package aleamb.regexengine;
+
+/**
+ * Statistics of the compilation of a regex: time spent in each phase and size of its automata.
+ * 
+ * Available from {@link Regex#getCompileStats()} and published to the
+ * {@link CompileListener} of {@link RegexOptions}. Phases not run for the execution mode of the
+ * regex take 0 nanoseconds, and automata not built at compile time have 0 states: in
+ * {@link ExecutionMode#LAZY_DFA} and {@link ExecutionMode#NFA} modes deterministic states are
+ * built while matching, and literal regexes have no automaton at all.
+ * 
+ * Instances are not modified once compile returns. They implement {@link CompileStatsMBean}, so they can be registered
+ * in a JMX MBean server.
+ */
+public final class CompileStats implements CompileStatsMBean {
+
+    private final String expression;
+
+    private ExecutionMode executionMode = ExecutionMode.AUTO;
+
+    private boolean literal;
+
+    private long parseNanos;
+    private long nfaNanos;
+    private long dfaNanos;
+    private long minimizeNanos;
+    private long tableNanos;
+
+    private int nfaStateCount;
+    private int dfaStateCount;
+    private int alphabetSize;
+    private int classCount;
+
+    private long estimatedBytes;
+
+    CompileStats(String pExpression) {
+        expression = pExpression;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return execution mode of compiled regex, {@link ExecutionMode#AUTO} if it is literal.
+     */
+    public String getExecutionMode() {
+        return executionMode.name();
+    }
+
+    /**
+     * @return true if regex is searched as literals, without automata.
+     */
+    public boolean isLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return time of lexical and syntax analysis.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return time of construction of the nondeterministic automaton and of the structure
+     *         executed in {@link ExecutionMode#LAZY_DFA} or {@link ExecutionMode#NFA} mode.
+     */
+    public long getNFANanos() {
+        return nfaNanos;
+    }
+
+    /**
+     * @return time of powerset construction of the search and reverse automata.
+     */
+    public long getDFANanos() {
+        return dfaNanos;
+    }
+
+    /**
+     * @return time of minimization of deterministic automata.
+     */
+    public long getMinimizeNanos() {
+        return minimizeNanos;
+    }
+
+    /**
+     * @return time of flattening of deterministic automata to transition tables.
+     */
+    public long getTableNanos() {
+        return tableNanos;
+    }
+
+    /**
+     * @return sum of time of all phases.
+     */
+    public long getTotalNanos() {
+        return parseNanos + nfaNanos + dfaNanos + minimizeNanos + tableNanos;
+    }
+
+    public int getNFAStateCount() {
+        return nfaStateCount;
+    }
+
+    /**
+     * @return states of the search automaton plus states of the reverse automaton, after
+     *         minimization if enabled.
+     */
+    public int getDFAStateCount() {
+        return dfaStateCount;
+    }
+
+    /**
+     * @return number of distinct transitions of the nondeterministic automaton, as given by
+     *         {@link aleamb.regexengine.fa.Automaton#getAlphabet()}.
+     */
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    /**
+     * @return number of character classes of transition tables.
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @return approximate heap size of transition tables, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    void setExecutionMode(ExecutionMode pExecutionMode) {
+        executionMode = pExecutionMode;
+    }
+
+    void setLiteral(boolean pLiteral) {
+        literal = pLiteral;
+    }
+
+    void setParseNanos(long pParseNanos) {
+        parseNanos = pParseNanos;
+    }
+
+    void setNFANanos(long pNfaNanos) {
+        nfaNanos = pNfaNanos;
+    }
+
+    void setDFANanos(long pDfaNanos) {
+        dfaNanos = pDfaNanos;
+    }
+
+    void setMinimizeNanos(long pMinimizeNanos) {
+        minimizeNanos = pMinimizeNanos;
+    }
+
+    void setTableNanos(long pTableNanos) {
+        tableNanos = pTableNanos;
+    }
+
+    void setNFAStateCount(int pNfaStateCount) {
+        nfaStateCount = pNfaStateCount;
+    }
+
+    void setDFAStateCount(int pDfaStateCount) {
+        dfaStateCount = pDfaStateCount;
+    }
+
+    void setAlphabetSize(int pAlphabetSize) {
+        alphabetSize = pAlphabetSize;
+    }
+
+    void setClassCount(int pClassCount) {
+        classCount = pClassCount;
+    }
+
+    void setEstimatedBytes(long pEstimatedBytes) {
+        estimatedBytes = pEstimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "parse " + parseNanos + " ns, NFA " + nfaNanos + " ns, DFA " + dfaNanos + " ns, minimize "
+                + minimizeNanos + " ns, table " + tableNanos + " ns; " + nfaStateCount + " NFA states, "
+                + dfaStateCount + " DFA states, " + alphabetSize + " alphabet transitions, " + classCount
+                + " classes, " + estimatedBytes + " bytes";
+    }
+
+}
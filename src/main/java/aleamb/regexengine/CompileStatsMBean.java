@@ -0,0 +1,37 @@
+package aleamb.regexengine;
+
+/**
+ * Management interface of {@link CompileStats}, so statistics of a compilation can be registered
+ * in a JMX MBean server as a standard MBean.
+ */
+public interface CompileStatsMBean {
+
+    String getExpression();
+
+    String getExecutionMode();
+
+    boolean isLiteral();
+
+    long getParseNanos();
+
+    long getNFANanos();
+
+    long getDFANanos();
+
+    long getMinimizeNanos();
+
+    long getTableNanos();
+
+    long getTotalNanos();
+
+    int getNFAStateCount();
+
+    int getDFAStateCount();
+
+    int getAlphabetSize();
+
+    int getClassCount();
+
+    long getEstimatedBytes();
+
+}
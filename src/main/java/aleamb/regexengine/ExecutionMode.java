@@ -0,0 +1,32 @@
+package aleamb.regexengine;
+
+/**
+ * How a compiled regex executes its automaton. See {@link RegexOptions#setExecutionMode(ExecutionMode)}.
+ */
+public enum ExecutionMode {
+
+    /**
+     * Deterministic automaton fully built at compile time. Fastest matching, but compile time and
+     * memory grow with the number of deterministic states, which may be exponential.
+     */
+    DFA,
+
+    /**
+     * Deterministic states built on demand while matching and kept in a bounded cache per thread.
+     * Compile time is linear in the size of the pattern.
+     */
+    LAZY_DFA,
+
+    /**
+     * No deterministic automaton. Match simulates the nondeterministic automaton, keeping the set of
+     * active states. Compile time is linear in the size of the pattern, but every input character
+     * costs time proportional to it. Suited to patterns applied once to short inputs.
+     */
+    NFA,
+
+    /**
+     * Engine chooses one of the other modes from the size of the nondeterministic automaton and
+     * {@link RegexOptions#getExpectedInputLength()}.
+     */
+    AUTO,
+}
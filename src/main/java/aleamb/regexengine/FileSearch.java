@@ -0,0 +1,252 @@
+package aleamb.regexengine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel search of every match of a {@link Regex} in a UTF-8 file.
+ * 
+ * File is memory mapped and split in chunks that end after a line feed. Chunks are scanned at the
+ * same time by the threads of an executor, by default the common fork/join pool, with the byte
+ * automata of {@link Regex#match(ByteBuffer, RegexMatchResult)}, so file is neither decoded nor
+ * copied into the heap. Matches are reported to a {@link StreamMatchHandler} in file order, from
+ * the calling thread, by their byte offsets, as chunks complete.
+ * 
+ * Each chunk is searched on its own, so a match never spans two chunks. Matches are the ones a
+ * {@link RegexStreamMatcher} finds in the whole file as long as no match contains a line feed.
+ */
+public final class FileSearch {
+
+    /**
+     * Minimum size of chunks sized from the file, 64 KB. Chunks grow to the end of line.
+     */
+    public static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Maximum size of chunks sized from the file, 64 MB, which bounds the matches a chunk keeps
+     * until they are reported.
+     */
+    public static final int MAX_CHUNK_SIZE = 1 << 26;
+
+    // chunks per thread, so threads finishing early take more work
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // chunks submitted and not yet reported, per thread
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private static final int LINE_FEED = '\n';
+
+    private FileSearch() {
+    }
+
+    /**
+     * Searches a file with the threads of {@link ForkJoinPool#commonPool()}.
+     * 
+     * @param regex compiled regex.
+     * @param file UTF-8 file.
+     * @param handler receives matches.
+     * @return number of matches reported.
+     * @throws IOException if file can not be read.
+     */
+    public static long search(Regex regex, File file, StreamMatchHandler handler) throws IOException {
+        return search(regex, file, ForkJoinPool.commonPool(), handler);
+    }
+
+    /**
+     * Searches a file with the threads of an executor, in chunks sized from the file so every
+     * thread gets several of them.
+     * 
+     * @param regex compiled regex.
+     * @param file UTF-8 file.
+     * @param executor executes the search of each chunk. It is not shut down.
+     * @param handler receives matches. If it stops, pending chunks are cancelled.
+     * @return number of matches reported.
+     * @throws IOException if file can not be read.
+     */
+    public static long search(Regex regex, File file, ExecutorService executor, StreamMatchHandler handler)
+            throws IOException {
+
+        long chunkSize = file.length() / (parallelism(executor) * CHUNKS_PER_THREAD);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+        return search(regex, file, executor, (int) chunkSize, handler);
+    }
+
+    /**
+     * Searches a file with the threads of an executor.
+     * 
+     * Only a few chunks per thread are submitted at a time. The next one is submitted when the
+     * matches of the first pending one have been reported, so matches kept in memory do not
+     * depend on file size.
+     * 
+     * @param regex compiled regex.
+     * @param file UTF-8 file.
+     * @param executor executes the search of each chunk. It is not shut down.
+     * @param chunkSize minimum size of each chunk, in bytes.
+     * @param handler receives matches. If it stops, pending chunks are cancelled.
+     * @return number of matches reported.
+     * @throws IOException if file can not be read.
+     */
+    public static long search(Regex regex, File file, ExecutorService executor, int chunkSize,
+            StreamMatchHandler handler) throws IOException {
+
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        }
+
+        FileInputStream input = new FileInputStream(file);
+        Deque<Future<long[]>> pending = new ArrayDeque<Future<long[]>>();
+        try {
+            FileChannel channel = input.getChannel();
+            long[] boundaries = split(channel, chunkSize);
+            int window = parallelism(executor) * CHUNKS_IN_FLIGHT_PER_THREAD;
+
+            long matchCount = 0;
+            int next = 0;
+            while (next + 1 < boundaries.length || !pending.isEmpty()) {
+                while (pending.size() < window && next + 1 < boundaries.length) {
+                    pending.add(submit(regex, channel, boundaries, next++, executor));
+                }
+                long[] matches = get(pending.remove());
+                for (int i = 0; i < matches.length; i += 2) {
+                    matchCount++;
+                    if (!handler.onMatch(matches[i], matches[i + 1])) {
+                        return matchCount;
+                    }
+                }
+            }
+            return matchCount;
+        } finally {
+            for (Future<long[]> chunk : pending) {
+                chunk.cancel(true);
+            }
+            input.close();
+        }
+    }
+
+    private static int parallelism(ExecutorService executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /*
+     * Maps a chunk and submits its search.
+     */
+    private static Future<long[]> submit(final Regex regex, FileChannel channel, long[] boundaries, int chunk,
+            ExecutorService executor) throws IOException {
+
+        final long start = boundaries[chunk];
+        final boolean last = chunk + 2 == boundaries.length;
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                boundaries[chunk + 1] - start);
+        return executor.submit(new Callable<long[]>() {
+            public long[] call() {
+                return searchChunk(regex, buffer, start, last);
+            }
+        });
+    }
+
+    /*
+     * Offsets where chunks start, followed by file size. Every chunk but the
+     * last one ends after a line feed.
+     */
+    private static long[] split(FileChannel channel, int chunkSize) throws IOException {
+
+        long size = channel.size();
+        long[] boundaries = new long[16];
+        int count = 0;
+        boundaries[count++] = 0;
+
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            // siguiente fin de línea
+            long lineEnd = -1;
+            while (lineEnd == -1 && position < size) {
+                block.clear();
+                int read = channel.read(block, position);
+                for (int i = 0; i < read; i++) {
+                    if (block.get(i) == LINE_FEED) {
+                        lineEnd = position + i + 1;
+                        break;
+                    }
+                }
+                position += Math.max(read, 0);
+            }
+            if (lineEnd == -1 || lineEnd == size) {
+                break;
+            }
+            if (count + 1 == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = lineEnd;
+            position = lineEnd + chunkSize;
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /*
+     * Start and end offsets of the matches of a chunk, one after another. An
+     * empty match at the end of a chunk belongs to the next one.
+     */
+    private static long[] searchChunk(Regex regex, ByteBuffer buffer, long offset, boolean last) {
+
+        long[] matches = new long[16];
+        int count = 0;
+
+        RegexMatchResult result = new RegexMatchResult();
+        int limit = buffer.remaining();
+        int position = 0;
+        while (position <= limit) {
+            result.setPosition(position);
+            if (!regex.match(buffer, result)) {
+                break;
+            }
+            int start = result.getMatchStartPosition();
+            int end = start + result.getMatchLength();
+            if (start == limit && !last) {
+                break;
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count * 2);
+            }
+            matches[count++] = offset + start;
+            matches[count++] = offset + end;
+            position = end == start ? end + 1 : end;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static long[] get(Future<long[]> chunk) throws IOException {
+
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+}
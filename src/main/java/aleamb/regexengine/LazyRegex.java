@@ -0,0 +1,75 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.LazyDFA;
+import aleamb.regexengine.fa.LazyTransitionTable;
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.fa.TransitionTable;
+import aleamb.regexengine.parser.ASTNode;
+
+/**
+ * Regex compiled in {@link ExecutionMode#LAZY_DFA} mode.
+ * 
+ * Deterministic states are built while matching. Each thread keeps its own cache of states, so
+ * instances are thread safe like any other {@link Regex}.
+ */
+class LazyRegex extends Regex {
+
+    private final LazyDFA lazyDFA;
+
+    private final ThreadLocal<LazyTransitionTable> searchTables;
+
+    private final ThreadLocal<LazyTransitionTable> reverseTables;
+
+    private final int maxStates;
+
+    LazyRegex(ASTNode pSyntaxTree, Automaton pNfa, LazyDFA pLazyDFA, Prefilter pPrefilter, final int pMaxStates) {
+
+        super(pSyntaxTree, pNfa, null, null, pPrefilter);
+        lazyDFA = pLazyDFA;
+        maxStates = pMaxStates;
+        searchTables = new ThreadLocal<LazyTransitionTable>() {
+            @Override
+            protected LazyTransitionTable initialValue() {
+                return lazyDFA.newSearchTable(maxStates);
+            }
+        };
+        reverseTables = new ThreadLocal<LazyTransitionTable>() {
+            @Override
+            protected LazyTransitionTable initialValue() {
+                return lazyDFA.newReverseTable(maxStates);
+            }
+        };
+    }
+
+    @Override
+    TransitionTable searchTable() {
+        return searchTables.get();
+    }
+
+    @Override
+    TransitionTable reverseTable() {
+        return reverseTables.get();
+    }
+
+    @Override
+    int lazyCacheStates() {
+        return maxStates;
+    }
+
+    @Override
+    Utf8Search newUtf8Search(Automaton utf8Nfa) {
+        return Utf8Search.buildLazy(utf8Nfa, maxStates);
+    }
+
+    @Override
+    StreamSearch newStreamSearch(Automaton nfa) {
+        return StreamSearch.buildLazy(nfa, maxStates);
+    }
+
+    @Override
+    int getWeight() {
+        return lazyDFA.getNFAStateCount() * lazyDFA.getClassCount();
+    }
+
+}
@@ -0,0 +1,36 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.LazyDFA;
+import aleamb.regexengine.fa.LazyTransitionTable;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Set of regular expressions compiled in {@link ExecutionMode#LAZY_DFA} mode.
+ * 
+ * Deterministic states are built while matching. Each thread keeps its own cache of states, so
+ * instances are thread safe like any other {@link RegexSet}.
+ */
+class LazyRegexSet extends RegexSet {
+
+    private final LazyDFA lazyDFA;
+
+    private final ThreadLocal<LazyTransitionTable> tables;
+
+    LazyRegexSet(String[] pPatterns, LazyDFA pLazyDFA, final int maxStates) {
+
+        super(pPatterns, null);
+        lazyDFA = pLazyDFA;
+        tables = new ThreadLocal<LazyTransitionTable>() {
+            @Override
+            protected LazyTransitionTable initialValue() {
+                return lazyDFA.newTable(maxStates);
+            }
+        };
+    }
+
+    @Override
+    TransitionTable transitionTable() {
+        return tables.get();
+    }
+
+}
@@ -0,0 +1,132 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.parser.ASTNode;
+
+/**
+ * Regex made of a single literal, like <code>lorem</code>.
+ * 
+ * Match finds next occurrence of the literal with Boyer-Moore-Horspool, without any automaton.
+ * Results are the same as the ones of a regex compiled to an automaton.
+ */
+class LiteralRegex extends Regex {
+
+    private final String literal;
+
+    private final Prefilter finder;
+
+    LiteralRegex(ASTNode pSyntaxTree, String pLiteral) {
+
+        super(pSyntaxTree, null, null, null, null);
+        literal = pLiteral;
+        finder = Prefilter.forLiteral(pLiteral);
+    }
+
+    @Override
+    boolean match(char[] buffer, int offset, int end, RegexMatchResult regexMatcher) {
+
+        int position = offset;
+
+        if (regexMatcher != null) {
+            position += regexMatcher.getPosition();
+        }
+        if (position > end) {
+            return false;
+        }
+
+        int matchStartPosition = finder.find(buffer, position, end);
+        if (matchStartPosition == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition(matchStartPosition - offset);
+            regexMatcher.setMatchLength(literal.length());
+        }
+        return true;
+    }
+
+    @Override
+    boolean matchSequence(CharSequence input, RegexMatchResult regexMatcher) {
+
+        int position = 0;
+
+        if (regexMatcher != null) {
+            position = regexMatcher.getPosition();
+        }
+        if (position > input.length()) {
+            return false;
+        }
+
+        int matchStartPosition = finder.find(input, position);
+        if (matchStartPosition == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition(matchStartPosition);
+            regexMatcher.setMatchLength(literal.length());
+        }
+        return true;
+    }
+
+    @Override
+    boolean find(char[] buffer, int offset, int end) {
+        return finder.find(buffer, offset, end) != -1;
+    }
+
+    @Override
+    boolean findSequence(CharSequence input) {
+        return finder.find(input, 0) != -1;
+    }
+
+    @Override
+    boolean matches(char[] buffer, int offset, int end) {
+
+        if (end - offset != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer[offset + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    boolean matchesSequence(CharSequence input) {
+        return literal.contentEquals(input);
+    }
+
+    @Override
+    int count(char[] buffer, int offset, int end) {
+
+        int count = 0;
+        int position = finder.find(buffer, offset, end);
+        while (position != -1) {
+            count++;
+            // literal is never empty, so occurrences do not overlap
+            position = finder.find(buffer, position + literal.length(), end);
+        }
+        return count;
+    }
+
+    @Override
+    int countSequence(CharSequence input) {
+
+        int count = 0;
+        int position = finder.find(input, 0);
+        while (position != -1) {
+            count++;
+            position = finder.find(input, position + literal.length());
+        }
+        return count;
+    }
+
+    @Override
+    int getWeight() {
+        return literal.length();
+    }
+
+}
@@ -0,0 +1,126 @@
+package aleamb.regexengine;
+
+import java.util.List;
+
+import aleamb.regexengine.fa.AhoCorasick;
+import aleamb.regexengine.parser.ASTNode;
+
+/**
+ * Regex made of an alternation of literals, like <code>foo|bar|baz</code>.
+ * 
+ * Match searches all literals at once with an Aho-Corasick automaton, which finds the same
+ * leftmost-longest occurrence as the automaton of the alternation.
+ */
+class LiteralSetRegex extends Regex {
+
+    private final List<String> literals;
+
+    private final AhoCorasick automaton;
+
+    LiteralSetRegex(ASTNode pSyntaxTree, List<String> pLiterals) {
+
+        super(pSyntaxTree, null, null, null, null);
+        literals = pLiterals;
+        automaton = AhoCorasick.build(pLiterals);
+    }
+
+    @Override
+    boolean match(char[] buffer, int offset, int end, RegexMatchResult regexMatcher) {
+
+        int position = offset;
+
+        if (regexMatcher != null) {
+            position += regexMatcher.getPosition();
+        }
+        if (position > end) {
+            return false;
+        }
+
+        long occurrence = automaton.search(buffer, position, end);
+        if (occurrence == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition((int) (occurrence >>> 32) - offset);
+            regexMatcher.setMatchLength((int) occurrence);
+        }
+        return true;
+    }
+
+    @Override
+    boolean matchSequence(CharSequence input, RegexMatchResult regexMatcher) {
+
+        int position = 0;
+
+        if (regexMatcher != null) {
+            position = regexMatcher.getPosition();
+        }
+        if (position > input.length()) {
+            return false;
+        }
+
+        long occurrence = automaton.search(input, position);
+        if (occurrence == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition((int) (occurrence >>> 32));
+            regexMatcher.setMatchLength((int) occurrence);
+        }
+        return true;
+    }
+
+    @Override
+    boolean find(char[] buffer, int offset, int end) {
+        return automaton.search(buffer, offset, end) != -1;
+    }
+
+    @Override
+    boolean findSequence(CharSequence input) {
+        return automaton.search(input, 0) != -1;
+    }
+
+    @Override
+    boolean matches(char[] buffer, int offset, int end) {
+        // if whole buffer is a literal, it is the leftmost-longest occurrence
+        return automaton.search(buffer, offset, end) == (((long) offset << 32) | (end - offset));
+    }
+
+    @Override
+    boolean matchesSequence(CharSequence input) {
+        return automaton.search(input, 0) == input.length();
+    }
+
+    @Override
+    int count(char[] buffer, int offset, int end) {
+
+        int count = 0;
+        long occurrence = automaton.search(buffer, offset, end);
+        while (occurrence != -1) {
+            count++;
+            // literals are never empty, so occurrences do not overlap
+            occurrence = automaton.search(buffer, (int) (occurrence >>> 32) + (int) occurrence, end);
+        }
+        return count;
+    }
+
+    @Override
+    int countSequence(CharSequence input) {
+
+        int count = 0;
+        long occurrence = automaton.search(input, 0);
+        while (occurrence != -1) {
+            count++;
+            occurrence = automaton.search(input, (int) (occurrence >>> 32) + (int) occurrence);
+        }
+        return count;
+    }
+
+    @Override
+    int getWeight() {
+        return automaton.getStateCount() * automaton.getClassCount();
+    }
+
+}
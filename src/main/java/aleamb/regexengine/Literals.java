@@ -0,0 +1,93 @@
+package aleamb.regexengine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import aleamb.regexengine.parser.ASTNode;
+import aleamb.regexengine.parser.Token;
+
+/**
+ * Detects regular expressions that are a literal or an alternation of literals, like
+ * <code>lorem</code> or <code>(foo|bar)baz</code>, from their syntax tree.
+ * 
+ * Characters follow the same rules as the automaton builder: <code>.</code> is a wildcard even
+ * when escaped, and any range or quantifier makes the expression not literal.
+ */
+final class Literals {
+
+    // larger sets are left to the automaton
+    private static final int MAX_LITERALS = 10000;
+
+    private Literals() {
+    }
+
+    /**
+     * @param root root of syntax tree.
+     * @return strings matched by the expression, without duplicates, or null if expression is not
+     *         made only of literals.
+     */
+    static List<String> fromAST(ASTNode root) {
+
+        Set<String> literals = regexp(root.getChildren().iterator().next());
+        return literals == null ? null : new ArrayList<String>(literals);
+    }
+
+    private static Set<String> regexp(ASTNode node) {
+
+        Set<String> concatenation = new LinkedHashSet<String>();
+        concatenation.add("");
+
+        for (ASTNode child : node.getChildren()) {
+            if (child.getType() == Token.QUANTIFIED_EXPR) {
+                Set<String> factor = quantifiedExpression(child);
+                if (factor == null || concatenation.size() * factor.size() > MAX_LITERALS) {
+                    return null;
+                }
+                Set<String> product = new LinkedHashSet<String>();
+                for (String prefix : concatenation) {
+                    for (String suffix : factor) {
+                        product.add(prefix + suffix);
+                    }
+                }
+                concatenation = product;
+            } else if (child.getType() == Token.REGEX) {
+                // PIPE and alternative expression
+                Iterator<ASTNode> alternative = child.getChildren().iterator();
+                alternative.next();
+                Set<String> right = regexp(alternative.next());
+                if (right == null || concatenation.size() + right.size() > MAX_LITERALS) {
+                    return null;
+                }
+                concatenation.addAll(right);
+            }
+        }
+        return concatenation;
+    }
+
+    private static Set<String> quantifiedExpression(ASTNode node) {
+
+        if (node.getChildrenCount() != 1) {
+            // quantifier
+            return null;
+        }
+        ASTNode expression = node.getChildren().iterator().next();
+        ASTNode child = expression.getChildren().iterator().next();
+
+        if (child.getType() == Token.GROUP) {
+            return regexp(child.getChildren().iterator().next());
+        }
+
+        // selector of a character or a range
+        ASTNode symbol = child.getChildren().iterator().next();
+        if (symbol.getType() == Token.RANGE || child.getValue().charAt(0) == '.') {
+            return null;
+        }
+        Set<String> literal = new LinkedHashSet<String>();
+        literal.add(child.getValue().substring(0, 1));
+        return literal;
+    }
+
+}
@@ -0,0 +1,114 @@
+package aleamb.regexengine;
+
+/**
+ * Limits of the work done by {@link Regex#match(char[], RegexMatchResult, MatchBudget)}: maximum
+ * number of characters examined, a deadline and a cancellation flag.
+ * 
+ * Search checks its budget every {@value #CHECK_INTERVAL} characters, so it may examine up to
+ * that number of characters more than allowed, or run that much after the deadline or after
+ * {@link #cancel()}. Characters examined are accumulated, so a budget shared by several calls
+ * limits all of them together, for example every match done for a request.
+ * 
+ * A budget is used by one thread at a time. {@link #cancel()} may be called from any thread.
+ */
+public final class MatchBudget {
+
+    /**
+     * Number of characters examined between two checks of the budget.
+     */
+    public static final int CHECK_INTERVAL = 4096;
+
+    private long maxChars;
+
+    private long deadline;
+
+    private long charsExamined;
+
+    private volatile boolean cancelled;
+
+    // reason why budget expired, null while it lasts
+    private MatchStatus expiredStatus;
+
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    /**
+     * Sets maximum number of characters examined. Default is 0, no limit.
+     * 
+     * @param maxChars number of characters, or 0.
+     */
+    public void setMaxChars(long maxChars) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("Negative number of characters");
+        }
+        this.maxChars = maxChars;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets time after which search stops. Default is 0, no deadline.
+     * 
+     * @param deadline time in milliseconds, as {@link System#currentTimeMillis()}, or 0.
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Sets deadline to a time from now.
+     * 
+     * @param timeout time in milliseconds.
+     */
+    public void setTimeout(long timeout) {
+        setDeadline(System.currentTimeMillis() + timeout);
+    }
+
+    /**
+     * Stops any search using this budget at its next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return characters examined by every search that used this budget, counted at each check.
+     */
+    public long getCharsExamined() {
+        return charsExamined;
+    }
+
+    /**
+     * Counts characters examined and checks the budget.
+     * 
+     * @return true if search may go on.
+     */
+    boolean spend(int chars) {
+
+        charsExamined += chars;
+        if (cancelled) {
+            expiredStatus = MatchStatus.CANCELLED;
+        } else if ((maxChars > 0 && charsExamined > maxChars)
+                || (deadline > 0 && System.currentTimeMillis() > deadline)) {
+            expiredStatus = MatchStatus.BUDGET_EXCEEDED;
+        } else {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return status returned when {@link #spend(int)} stops search.
+     */
+    MatchStatus getExpiredStatus() {
+        return expiredStatus;
+    }
+
+}
@@ -0,0 +1,27 @@
+package aleamb.regexengine;
+
+/**
+ * Result of a match with a {@link MatchBudget}.
+ */
+public enum MatchStatus {
+
+    /**
+     * A match was found.
+     */
+    MATCH,
+
+    /**
+     * Whole input was searched without finding a match.
+     */
+    NO_MATCH,
+
+    /**
+     * Search stopped because it examined more characters than allowed or its deadline passed.
+     */
+    BUDGET_EXCEEDED,
+
+    /**
+     * Search stopped because its budget was cancelled.
+     */
+    CANCELLED
+}
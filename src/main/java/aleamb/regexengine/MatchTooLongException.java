@@ -0,0 +1,14 @@
+package aleamb.regexengine;
+
+/**
+ * Thrown by {@link RegexStreamMatcher} when a match still in progress is longer than its buffer.
+ */
+public class MatchTooLongException extends RegexException {
+
+    private static final long serialVersionUID = 3419178307587360715L;
+
+    public MatchTooLongException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,217 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.NFAProgram;
+import aleamb.regexengine.fa.NFASimulator;
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.parser.ASTNode;
+
+/**
+ * Regex compiled in {@link ExecutionMode#NFA} mode.
+ * 
+ * Match simulates the nondeterministic automaton. Each thread keeps its own simulator, so
+ * instances are thread safe like any other {@link Regex}.
+ */
+class NFARegex extends Regex {
+
+    private final NFAProgram program;
+
+    private final ThreadLocal<NFASimulator> simulators;
+
+    // cache size of byte and stream automata, built while matching like in LAZY_DFA mode
+    private final int lazyCacheStates;
+
+    NFARegex(ASTNode pSyntaxTree, Automaton pNfa, NFAProgram pProgram, Prefilter pPrefilter, int pLazyCacheStates) {
+
+        super(pSyntaxTree, pNfa, null, null, pPrefilter);
+        program = pProgram;
+        lazyCacheStates = pLazyCacheStates;
+        simulators = new ThreadLocal<NFASimulator>() {
+            @Override
+            protected NFASimulator initialValue() {
+                return program.newSimulator();
+            }
+        };
+    }
+
+    @Override
+    boolean match(char[] buffer, int offset, int end, RegexMatchResult regexMatcher) {
+
+        int position = offset;
+
+        if (regexMatcher != null) {
+            position += regexMatcher.getPosition();
+        }
+        if (position > end) {
+            return false;
+        }
+
+        Prefilter prefilter = prefilter();
+        if (prefilter != null) {
+            position = prefilter.find(buffer, position, end);
+            if (position == -1) {
+                return false;
+            }
+        }
+
+        NFASimulator simulator = simulators.get();
+        if (!simulator.search(buffer, position, end)) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition(simulator.getMatchStart() - offset);
+            regexMatcher.setMatchLength(simulator.getMatchEnd() - simulator.getMatchStart());
+        }
+        return true;
+    }
+
+    @Override
+    boolean matchSequence(CharSequence input, RegexMatchResult regexMatcher) {
+
+        int position = 0;
+
+        if (regexMatcher != null) {
+            position = regexMatcher.getPosition();
+        }
+        if (position > input.length()) {
+            return false;
+        }
+
+        Prefilter prefilter = prefilter();
+        if (prefilter != null) {
+            position = prefilter.find(input, position);
+            if (position == -1) {
+                return false;
+            }
+        }
+
+        NFASimulator simulator = simulators.get();
+        if (!simulator.search(input, position)) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            regexMatcher.setMatchStartPosition(simulator.getMatchStart());
+            regexMatcher.setMatchLength(simulator.getMatchEnd() - simulator.getMatchStart());
+        }
+        return true;
+    }
+
+    @Override
+    boolean find(char[] buffer, int offset, int end) {
+
+        int position = offset;
+        Prefilter prefilter = prefilter();
+        if (prefilter != null) {
+            position = prefilter.find(buffer, position, end);
+            if (position == -1) {
+                return false;
+            }
+        }
+        return simulators.get().find(buffer, position, end);
+    }
+
+    @Override
+    boolean findSequence(CharSequence input) {
+
+        int position = 0;
+        Prefilter prefilter = prefilter();
+        if (prefilter != null) {
+            position = prefilter.find(input, position);
+            if (position == -1) {
+                return false;
+            }
+        }
+        return simulators.get().find(input, position);
+    }
+
+    @Override
+    boolean matches(char[] buffer, int offset, int end) {
+
+        // if whole buffer matches, it is the leftmost-longest match
+        NFASimulator simulator = simulators.get();
+        return simulator.search(buffer, offset, end) && simulator.getMatchStart() == offset
+                && simulator.getMatchEnd() == end;
+    }
+
+    @Override
+    boolean matchesSequence(CharSequence input) {
+
+        NFASimulator simulator = simulators.get();
+        return simulator.search(input, 0) && simulator.getMatchStart() == 0
+                && simulator.getMatchEnd() == input.length();
+    }
+
+    @Override
+    int count(char[] buffer, int offset, int end) {
+
+        NFASimulator simulator = simulators.get();
+        Prefilter prefilter = prefilter();
+        int count = 0;
+        int position = offset;
+
+        while (position <= end) {
+            if (prefilter != null) {
+                position = prefilter.find(buffer, position, end);
+                if (position == -1) {
+                    break;
+                }
+            }
+            if (!simulator.search(buffer, position, end)) {
+                break;
+            }
+            count++;
+            int matchEnd = simulator.getMatchEnd();
+            position = matchEnd == simulator.getMatchStart() ? matchEnd + 1 : matchEnd;
+        }
+        return count;
+    }
+
+    @Override
+    int countSequence(CharSequence input) {
+
+        NFASimulator simulator = simulators.get();
+        Prefilter prefilter = prefilter();
+        final int end = input.length();
+        int count = 0;
+        int position = 0;
+
+        while (position <= end) {
+            if (prefilter != null) {
+                position = prefilter.find(input, position);
+                if (position == -1) {
+                    break;
+                }
+            }
+            if (!simulator.search(input, position)) {
+                break;
+            }
+            count++;
+            int matchEnd = simulator.getMatchEnd();
+            position = matchEnd == simulator.getMatchStart() ? matchEnd + 1 : matchEnd;
+        }
+        return count;
+    }
+
+    @Override
+    int lazyCacheStates() {
+        return lazyCacheStates;
+    }
+
+    @Override
+    Utf8Search newUtf8Search(Automaton utf8Nfa) {
+        return Utf8Search.buildLazy(utf8Nfa, lazyCacheStates);
+    }
+
+    @Override
+    StreamSearch newStreamSearch(Automaton nfa) {
+        return StreamSearch.buildLazy(nfa, lazyCacheStates);
+    }
+
+    @Override
+    int getWeight() {
+        return program.getStateCount();
+    }
+
+}
@@ -1,8 +1,14 @@
 package aleamb.regexengine;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 import aleamb.regexengine.fa.Automaton;
-import aleamb.regexengine.fa.State;
-import aleamb.regexengine.fa.Transition;
+import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.fa.CharClassMap;
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.fa.TransitionTable;
+import aleamb.regexengine.parser.ASTNode;
 
 /**
  * Compiled regular expression.
@@ -14,113 +20,966 @@ import aleamb.regexengine.fa.Transition;
  * If pass an instance of {@link RegexMatchResult} in second parameter, matching will start from 
  * indicated position.
  * 
+ * UTF-8 input can be matched without decoding with {@link Regex#match(byte[], RegexMatchResult)}
+ * and {@link Regex#match(ByteBuffer, RegexMatchResult)}.
+ * 
+ * A compiled regex is thread safe and can be shared: its automata and tables are never modified
+ * after compilation, and the state of a search lives in the {@link RegexMatchResult} or
+ * {@link RegexMatcher} of each caller. Automata built on first use are published through
+ * volatile fields, and caches of states built while matching are kept per thread.
  *  
  */
 public class Regex {
 
-    // Deterministic finite automaton that models regular expression.
-    private Automaton finiteAutomaton;
+    // Syntax tree, lowered to UTF-8 automata on first match over bytes. Regexes loaded from a
+    // bundle parse their expression the first time the tree is needed.
+    private volatile ASTNode syntaxTree;
+    private final String expression;
+
+    // Deterministic finite automaton that searches regular expression.
+    private final Automaton finiteAutomaton;
+
+    // Search automaton flattened to a table. Finds where matches end.
+    private final TransitionTable searchTable;
+
+    // Reverse automaton flattened to a table. Finds where a match starts from its end.
+    private final TransitionTable reverseTable;
+
+    // Finds positions where a match may start, or null.
+    private final Prefilter prefilter;
 
-    Regex(Automaton pFiniteAutomaton) {
+    // Search over UTF-8 bytes, null until first needed.
+    private volatile Utf8Search utf8Search;
 
+    // Automata of streams of characters and of UTF-8 bytes, null until first needed.
+    private volatile StreamSearch streamSearch;
+    private volatile StreamSearch utf8StreamSearch;
+
+    private final Object lazyLock = new Object();
+
+    // statistics of compilation, set by RegexEngine and RegexBundle after construction
+    private volatile CompileStats compileStats;
+
+    Regex(ASTNode pSyntaxTree, Automaton pFiniteAutomaton, TransitionTable pSearchTable,
+            TransitionTable pReverseTable, Prefilter pPrefilter) {
+
+        syntaxTree = pSyntaxTree;
+        expression = null;
         finiteAutomaton = pFiniteAutomaton;
+        searchTable = pSearchTable;
+        reverseTable = pReverseTable;
+        prefilter = pPrefilter;
+
+    }
+
+    /*
+     * Regex loaded from a bundle with its tables. Expression is parsed when the syntax tree is
+     * first needed.
+     */
+    Regex(String pExpression, TransitionTable pSearchTable, TransitionTable pReverseTable,
+            Prefilter pPrefilter) {
+
+        expression = pExpression;
+        finiteAutomaton = null;
+        searchTable = pSearchTable;
+        reverseTable = pReverseTable;
+        prefilter = pPrefilter;
 
     }
 
+    /**
+     * Creates a matcher without input. Call {@link RegexMatcher#reset(char[])} before searching.
+     * 
+     * @return new matcher for this regex.
+     */
+    public RegexMatcher matcher() {
+        return new RegexMatcher(this, (char[]) null);
+    }
+
+    /**
+     * Creates a matcher for an input buffer.
+     * 
+     * @param buffer input buffer.
+     * @return new matcher for this regex.
+     */
+    public RegexMatcher matcher(char[] buffer) {
+        return new RegexMatcher(this, buffer);
+    }
+
+    /**
+     * Creates a matcher for a character sequence. The sequence is not copied.
+     * 
+     * @param input input sequence.
+     * @return new matcher for this regex.
+     */
+    public RegexMatcher matcher(CharSequence input) {
+        return new RegexMatcher(this, input);
+    }
+
     /**
      * Executes compiled regex for an input char buffer.
      * 
      * if {@link RegexMatchResult} is specified, method will be store the start position of match and its length into it.
      * this param indicates to method where start matching too, thorough position attribute.
      * 
+     * Match found is the leftmost-longest one: the match that starts first and, among matches
+     * starting there, the longest one. It may be empty, also at the end of buffer.
+     * 
+     * Search scans forward from start position with the search automaton until the end of the
+     * match is known, then scans backwards from that end with the reverse automaton to find
+     * where it starts. Every character is read at most once by each scan. If every match starts
+     * with a known literal or character set, search first skips to the first position where it
+     * appears.
+     * 
      * @param buffer input buffer.
      * @param regexMatcher {@link RegexMatchResult} that register subset of matching char data.
      * @return true if match found.
      */
     public boolean match(char[] buffer, RegexMatchResult regexMatcher) {
+        return match(buffer, 0, buffer.length, regexMatcher);
+    }
 
-        boolean stop = false;
+    /**
+     * Executes compiled regex for a character sequence, as {@link #match(char[], RegexMatchResult)},
+     * without copying it.
+     * 
+     * Heap {@link CharBuffer}s are scanned through their backing array, between buffer position
+     * and limit, and positions of {@link RegexMatchResult} are relative to buffer position, as
+     * {@link CharBuffer#charAt(int)}. Direct and other {@link CharBuffer}s are read with
+     * absolute {@link CharBuffer#get(int)}. Strings and any other sequence are read with
+     * {@link CharSequence#charAt(int)}.
+     * 
+     * @param input input sequence.
+     * @param regexMatcher {@link RegexMatchResult} that register subset of matching char data.
+     * @return true if match found.
+     */
+    public boolean match(CharSequence input, RegexMatchResult regexMatcher) {
 
-        boolean match = false;
-        // start of occurrence
-        int matchStartPosition = -1;
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            CharBuffer charBuffer = (CharBuffer) input;
+            int offset = charBuffer.arrayOffset() + charBuffer.position();
+            return match(charBuffer.array(), offset, offset + charBuffer.remaining(), regexMatcher);
+        }
+        return matchSequence(input, regexMatcher);
+    }
+
+    /**
+     * Executes compiled regex for the characters of a buffer between <code>offset</code> and
+     * <code>end</code>. Positions of {@link RegexMatchResult} are relative to offset. Subclasses
+     * override this method and {@link #matchSequence(CharSequence, RegexMatchResult)}.
+     */
+    boolean match(char[] buffer, int offset, int end, RegexMatchResult regexMatcher) {
+        return search(buffer, null, offset, end, regexMatcher, null) == MatchStatus.MATCH;
+    }
+
+    /**
+     * Executes compiled regex for a character sequence read with {@link CharSequence#charAt(int)}.
+     */
+    boolean matchSequence(CharSequence input, RegexMatchResult regexMatcher) {
+        return search(null, input, 0, input.length(), regexMatcher, null) == MatchStatus.MATCH;
+    }
+
+    /**
+     * Executes compiled regex for an input buffer, as {@link #match(char[], RegexMatchResult)},
+     * within a budget of characters examined and time, and until the budget is cancelled.
+     * 
+     * Search checks the budget every {@value MatchBudget#CHECK_INTERVAL} characters. When the
+     * budget expires, search stops and {@link RegexMatchResult} is not modified. Regexes without
+     * transition tables, compiled in {@link ExecutionMode#NFA} mode or searched as literals, build
+     * deterministic states on demand for this method, as for streams.
+     * 
+     * @param buffer input buffer.
+     * @param regexMatcher {@link RegexMatchResult} that register subset of matching char data.
+     * @param budget limits of search.
+     * @return {@link MatchStatus#MATCH} or {@link MatchStatus#NO_MATCH} if search finished,
+     *         otherwise the reason why it stopped.
+     */
+    public MatchStatus match(char[] buffer, RegexMatchResult regexMatcher, MatchBudget budget) {
+        return search(buffer, null, 0, buffer.length, regexMatcher, budget);
+    }
+
+    /**
+     * Executes compiled regex for a character sequence within a budget, as
+     * {@link #match(char[], RegexMatchResult, MatchBudget)}. Sequences are handled as in
+     * {@link #match(CharSequence, RegexMatchResult)}.
+     * 
+     * @param input input sequence.
+     * @param regexMatcher {@link RegexMatchResult} that register subset of matching char data.
+     * @param budget limits of search.
+     * @return status of search.
+     */
+    public MatchStatus match(CharSequence input, RegexMatchResult regexMatcher, MatchBudget budget) {
+
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            CharBuffer charBuffer = (CharBuffer) input;
+            int offset = charBuffer.arrayOffset() + charBuffer.position();
+            return search(charBuffer.array(), null, offset, offset + charBuffer.remaining(), regexMatcher, budget);
+        }
+        return search(null, input, 0, input.length(), regexMatcher, budget);
+    }
+
+    /*
+     * Searches the leftmost-longest match in a buffer or, if buffer is null, in a character
+     * sequence. Budget may be null.
+     */
+    private MatchStatus search(char[] buffer, CharSequence input, int offset, int end,
+            RegexMatchResult regexMatcher, MatchBudget budget) {
 
         // current position
-        int position = 0;
+        int position = offset;
 
         if (regexMatcher != null) {
-            position = regexMatcher.getPosition();
+            position += regexMatcher.getPosition();
+        }
+        if (position > end) {
+            return MatchStatus.NO_MATCH;
+        }
+        if (budget != null && !budget.spend(0)) {
+            return budget.getExpiredStatus();
+        }
+
+        // prefilter of sequences can not stop at window ends, with a budget automaton checks every position
+        if (prefilter != null && (buffer != null || budget == null)) {
+            // no match starts before first candidate
+            position = findCandidate(buffer, input, position, end, budget);
+            if (position < 0) {
+                return position == -1 ? MatchStatus.NO_MATCH : budget.getExpiredStatus();
+            }
+        }
+
+        TransitionTable searchTable = searchTable();
+        TransitionTable reverseTable = reverseTable();
+        if (searchTable == null) {
+            // regexes without tables build them on demand for budgets
+            StreamSearch streamSearch = streamSearch(false);
+            searchTable = streamSearch.searchTable();
+            reverseTable = streamSearch.reverseTable();
+        }
+
+        int matchEndPosition = scanForward(searchTable, buffer, input, position, end, false, budget);
+        if (matchEndPosition < 0) {
+            return matchEndPosition == -1 ? MatchStatus.NO_MATCH : budget.getExpiredStatus();
+        }
+
+        if (regexMatcher != null) {
+            int matchStartPosition = scanBackward(reverseTable, buffer, input, matchEndPosition, position, budget);
+            if (matchStartPosition < 0) {
+                return budget.getExpiredStatus();
+            }
+            regexMatcher.setMatchStartPosition(matchStartPosition - offset);
+            regexMatcher.setMatchLength(matchEndPosition - matchStartPosition);
+        }
+        return MatchStatus.MATCH;
+    }
+
+    /*
+     * First candidate of prefilter from a position, -1 if there is none or BUDGET_EXPIRED. With a
+     * budget, buffer is skipped in windows overlapped by the length of a candidate.
+     */
+    private int findCandidate(char[] buffer, CharSequence input, int position, int end, MatchBudget budget) {
+
+        if (buffer == null) {
+            return prefilter.find(input, position);
+        }
+        if (budget == null) {
+            return prefilter.find(buffer, position, end);
+        }
+        int overlap = prefilter.getLength() - 1;
+        while (true) {
+            int windowEnd = end - position > MatchBudget.CHECK_INTERVAL + overlap ? position
+                    + MatchBudget.CHECK_INTERVAL + overlap : end;
+            int candidate = prefilter.find(buffer, position, windowEnd);
+            if (candidate != -1 || windowEnd == end) {
+                return candidate;
+            }
+            if (!budget.spend(MatchBudget.CHECK_INTERVAL)) {
+                return BUDGET_EXPIRED;
+            }
+            position += MatchBudget.CHECK_INTERVAL;
         }
+    }
 
-        // inital state of deterministic automaton
-        State currentState = finiteAutomaton.getInitialState();
+    /**
+     * Tells if there is any match in a buffer, as {@link #match(char[], RegexMatchResult)} without
+     * result. Search stops at the first accepting state and the start of the match is never
+     * searched.
+     * 
+     * @param buffer input buffer.
+     * @return true if match found.
+     */
+    public boolean find(char[] buffer) {
+        return find(buffer, 0, buffer.length);
+    }
 
-        // While chars in buffer. Automaton is greedy
-        while (currentState.hasTransitions() && (position < buffer.length) && !stop) {
+    /**
+     * Tells if there is any match in a character sequence, as {@link #find(char[])}.
+     * 
+     * @param input input sequence.
+     * @return true if match found.
+     */
+    public boolean find(CharSequence input) {
 
-            char c = buffer[position];
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            CharBuffer charBuffer = (CharBuffer) input;
+            int offset = charBuffer.arrayOffset() + charBuffer.position();
+            return find(charBuffer.array(), offset, offset + charBuffer.remaining());
+        }
+        return findSequence(input);
+    }
 
-            // find the transition match character
-            Transition transition = matchTransition((char) c, currentState);
+    /**
+     * Tells if a whole buffer matches the regex. The buffer is read backwards with the reverse
+     * automaton, which stops at the first character that can not be part of a match.
+     * 
+     * @param buffer input buffer.
+     * @return true if whole buffer matches.
+     */
+    public boolean matches(char[] buffer) {
+        return matches(buffer, 0, buffer.length);
+    }
 
-            if (transition == null) {
+    /**
+     * Tells if a whole character sequence matches the regex, as {@link #matches(char[])}.
+     * 
+     * @param input input sequence.
+     * @return true if whole sequence matches.
+     */
+    public boolean matches(CharSequence input) {
 
-                if (currentState.isEnd()) {
-                    match = true;
-                    stop = true;
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            CharBuffer charBuffer = (CharBuffer) input;
+            int offset = charBuffer.arrayOffset() + charBuffer.position();
+            return matches(charBuffer.array(), offset, offset + charBuffer.remaining());
+        }
+        return matchesSequence(input);
+    }
+
+    /**
+     * Counts the matches of a buffer, which are the ones {@link RegexMatcher#find()} finds one
+     * after another. Only the end of each match is searched.
+     * 
+     * @param buffer input buffer.
+     * @return number of matches.
+     */
+    public int count(char[] buffer) {
+        return count(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Counts the matches of a character sequence, as {@link #count(char[])}.
+     * 
+     * @param input input sequence.
+     * @return number of matches.
+     */
+    public int count(CharSequence input) {
+
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            CharBuffer charBuffer = (CharBuffer) input;
+            int offset = charBuffer.arrayOffset() + charBuffer.position();
+            return count(charBuffer.array(), offset, offset + charBuffer.remaining());
+        }
+        return countSequence(input);
+    }
+
+    /**
+     * Tells if there is any match between <code>offset</code> and <code>end</code>. Subclasses
+     * override this method and the ones of {@link #matches(char[])} and {@link #count(char[])}.
+     */
+    boolean find(char[] buffer, int offset, int end) {
+        return findAny(buffer, null, offset, end);
+    }
+
+    boolean findSequence(CharSequence input) {
+        return findAny(null, input, 0, input.length());
+    }
+
+    boolean matches(char[] buffer, int offset, int end) {
+        return matchesWhole(buffer, null, offset, end);
+    }
+
+    boolean matchesSequence(CharSequence input) {
+        return matchesWhole(null, input, 0, input.length());
+    }
+
+    int count(char[] buffer, int offset, int end) {
+        return countMatches(buffer, null, offset, end);
+    }
+
+    int countSequence(CharSequence input) {
+        return countMatches(null, input, 0, input.length());
+    }
+
+    private boolean findAny(char[] buffer, CharSequence input, int offset, int end) {
+
+        int position = offset;
+        if (prefilter != null) {
+            position = findCandidate(buffer, input, position, end, null);
+            if (position == -1) {
+                return false;
+            }
+        }
+        return scanForward(searchTable(), buffer, input, position, end, true, null) != -1;
+    }
+
+    private boolean matchesWhole(char[] buffer, CharSequence input, int offset, int end) {
+
+        // the reverse automaton recognizes reversed matches, anchored at both ends when run to the start
+        TransitionTable transitionTable = reverseTable();
+        int matchStartPosition = scanBackward(transitionTable, buffer, input, end, offset, null);
+        return matchStartPosition == offset
+                && (offset < end || transitionTable.isAccepting(transitionTable.getInitialState()));
+    }
+
+    private int countMatches(char[] buffer, CharSequence input, int offset, int end) {
+
+        final TransitionTable transitionTable = searchTable();
+        int count = 0;
+        int position = offset;
+
+        while (position <= end) {
+            if (prefilter != null) {
+                position = findCandidate(buffer, input, position, end, null);
+                if (position == -1) {
+                    break;
+                }
+            }
+            int matchEndPosition = scanForward(transitionTable, buffer, input, position, end, false, null);
+            if (matchEndPosition == -1) {
+                break;
+            }
+            count++;
+            // without anchors, an empty match can only start where search starts
+            position = matchEndPosition == position ? matchEndPosition + 1 : matchEndPosition;
+        }
+        return count;
+    }
+
+    /**
+     * Executes compiled regex for UTF-8 encoded input, without decoding it.
+     * 
+     * Match is the same one {@link #match(char[], RegexMatchResult)} finds in the decoded text, and
+     * positions of {@link RegexMatchResult} are byte offsets. A supplementary character, encoded
+     * with 4 bytes, is a single character here: it is matched by <code>.</code> and by excluded sets.
+     * Malformed sequences never match.
+     * 
+     * Byte automata are built the first time this method or
+     * {@link #match(ByteBuffer, RegexMatchResult)} is called.
+     * 
+     * @param buffer UTF-8 input buffer.
+     * @param regexMatcher {@link RegexMatchResult} that register subset of matching bytes.
+     * @return true if match found.
+     */
+    public boolean match(byte[] buffer, RegexMatchResult regexMatcher) {
+        return utf8Search().match(buffer, 0, buffer.length, regexMatcher);
+    }
+
+    /**
+     * Executes compiled regex for the UTF-8 bytes between position and limit of a buffer, as
+     * {@link #match(byte[], RegexMatchResult)}. Heap and direct buffers are read in place, and
+     * buffer position is not modified.
+     * 
+     * @param buffer UTF-8 input buffer.
+     * @param regexMatcher {@link RegexMatchResult} that register subset of matching bytes. Its
+     *        positions are relative to buffer position.
+     * @return true if match found.
+     */
+    public boolean match(ByteBuffer buffer, RegexMatchResult regexMatcher) {
+        return utf8Search().match(buffer, regexMatcher);
+    }
 
-                    if (matchStartPosition == -1) {
-                        matchStartPosition = position;
+    private Utf8Search utf8Search() {
+
+        Utf8Search search = utf8Search;
+        if (search == null) {
+            synchronized (lazyLock) {
+                search = utf8Search;
+                if (search == null) {
+                    Automaton nfa = AutomatonBuilder.generateFromAST(syntaxTree());
+                    search = newUtf8Search(AutomatonBuilder.generateUtf8NFA(nfa));
+                    utf8Search = search;
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Builds the search over bytes. Subclasses may build states while matching.
+     */
+    Utf8Search newUtf8Search(Automaton utf8Nfa) {
+        return Utf8Search.build(utf8Nfa);
+    }
+
+    /**
+     * Creates a matcher for streams, with a limit of 65536 characters or bytes for matches.
+     * 
+     * @return new stream matcher for this regex.
+     * @see #streamMatcher(int)
+     */
+    public RegexStreamMatcher streamMatcher() {
+        return new RegexStreamMatcher(this, 1 << 16);
+    }
+
+    /**
+     * Creates a matcher for streams. Its buffer is allocated once, with room for a match in
+     * progress of the given length plus the next chunk read.
+     * 
+     * @param maxMatchLength maximum length of a match, in characters or bytes.
+     * @return new stream matcher for this regex.
+     */
+    public RegexStreamMatcher streamMatcher(int maxMatchLength) {
+        return new RegexStreamMatcher(this, maxMatchLength);
+    }
+
+    StreamSearch streamSearch(boolean utf8) {
+
+        StreamSearch search = utf8 ? utf8StreamSearch : streamSearch;
+        if (search == null) {
+            synchronized (lazyLock) {
+                search = utf8 ? utf8StreamSearch : streamSearch;
+                if (search == null) {
+                    Automaton nfa = AutomatonBuilder.generateFromAST(syntaxTree());
+                    if (utf8) {
+                        search = newStreamSearch(AutomatonBuilder.generateUtf8NFA(nfa));
+                        utf8StreamSearch = search;
+                    } else {
+                        search = newStreamSearch(nfa);
+                        streamSearch = search;
                     }
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Builds the automata of streams. Subclasses may build states while matching.
+     */
+    StreamSearch newStreamSearch(Automaton nfa) {
+        return StreamSearch.build(nfa);
+    }
 
-                } else {
+    // result of scans when budget expires
+    private static final int BUDGET_EXPIRED = -2;
 
-                    // reset automaton to start
-                    currentState = finiteAutomaton.getInitialState();
-                    position++;
-                    // clear start position of match register
-                    matchStartPosition = -1;
+    /*
+     * Runs search automaton from a position while it is alive, over a buffer or, if buffer is
+     * null, a character sequence. Returns the position after its last accepting state, or after
+     * the first one if firstMatch is set, or -1. Budget, if not null, is spent after each block
+     * of characters; returns BUDGET_EXPIRED when it expires.
+     */
+    private static int scanForward(TransitionTable transitionTable, char[] buffer, CharSequence input,
+            int position, int end, boolean firstMatch, MatchBudget budget) {
+
+        // each input type has its own loop, so reads are an array access or a call site of few types
+        if (buffer != null) {
+            return scanForward(transitionTable, buffer, position, end, firstMatch, budget);
+        }
+        if (input instanceof CharBuffer) {
+            return scanForward(transitionTable, (CharBuffer) input, position, end, firstMatch, budget);
+        }
+        return scanForward(transitionTable, input, position, end, firstMatch, budget);
+    }
+
+    private static int scanForward(TransitionTable transitionTable, char[] buffer, int position, int end,
+            boolean firstMatch, MatchBudget budget) {
+
+        // flattened automaton, read into locals for the inner loop
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchEndPosition = accepting[currentState] ? position : -1;
+        if (firstMatch && matchEndPosition != -1) {
+            return matchEndPosition;
+        }
+
+        while (position < end) {
+
+            int blockStart = position;
+            int blockEnd = blockEnd(position, end, budget);
+
+            while (position < blockEnd) {
+
+                int charClass = classMap.classOf(buffer[position]);
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    // state not built yet
+                    nextState = transitionTable.computeNext(currentState, charClass, position);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, position - blockStart);
+                    return matchEndPosition;
                 }
 
-            } else {
-                // transition found, go to next state
-                currentState = transition.getNextState();
-                // registramos la posicion de comienzo de la coincidencia
+                currentState = nextState;
+                position++;
+                if (accepting[currentState]) {
+                    matchEndPosition = position;
+                    if (firstMatch) {
+                        spend(budget, position - blockStart);
+                        return matchEndPosition;
+                    }
+                }
+            }
+            if (budget != null && !budget.spend(position - blockStart)) {
+                return BUDGET_EXPIRED;
+            }
+        }
+        return matchEndPosition;
+    }
 
-                // la regex se cuplira s el estado es de aceptacion
-                match = currentState.isEnd();
+    private static int scanForward(TransitionTable transitionTable, CharSequence input, int position, int end,
+            boolean firstMatch, MatchBudget budget) {
 
-                if (matchStartPosition == -1) {
-                    matchStartPosition = position;
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchEndPosition = accepting[currentState] ? position : -1;
+        if (firstMatch && matchEndPosition != -1) {
+            return matchEndPosition;
+        }
+
+        while (position < end) {
+
+            int blockStart = position;
+            int blockEnd = blockEnd(position, end, budget);
+
+            while (position < blockEnd) {
+
+                int charClass = classMap.classOf(input.charAt(position));
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = transitionTable.computeNext(currentState, charClass, position);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, position - blockStart);
+                    return matchEndPosition;
                 }
+
+                currentState = nextState;
                 position++;
+                if (accepting[currentState]) {
+                    matchEndPosition = position;
+                    if (firstMatch) {
+                        spend(budget, position - blockStart);
+                        return matchEndPosition;
+                    }
+                }
+            }
+            if (budget != null && !budget.spend(position - blockStart)) {
+                return BUDGET_EXPIRED;
+            }
+        }
+        return matchEndPosition;
+    }
+
+    private static int scanForward(TransitionTable transitionTable, CharBuffer buffer, int position, int end,
+            boolean firstMatch, MatchBudget budget) {
+
+        // positions are relative to buffer position, read with absolute gets
+        final int base = buffer.position();
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchEndPosition = accepting[currentState] ? position : -1;
+        if (firstMatch && matchEndPosition != -1) {
+            return matchEndPosition;
+        }
 
+        while (position < end) {
+
+            int blockStart = position;
+            int blockEnd = blockEnd(position, end, budget);
+
+            while (position < blockEnd) {
+
+                int charClass = classMap.classOf(buffer.get(base + position));
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = transitionTable.computeNext(currentState, charClass, position);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, position - blockStart);
+                    return matchEndPosition;
+                }
+
+                currentState = nextState;
+                position++;
+                if (accepting[currentState]) {
+                    matchEndPosition = position;
+                    if (firstMatch) {
+                        spend(budget, position - blockStart);
+                        return matchEndPosition;
+                    }
+                }
+            }
+            if (budget != null && !budget.spend(position - blockStart)) {
+                return BUDGET_EXPIRED;
             }
         }
+        return matchEndPosition;
+    }
 
-        if (match) {
-            if (regexMatcher != null) {
-                regexMatcher.setMatchStartPosition(matchStartPosition);
+    /*
+     * Runs reverse automaton backwards from the end of a match down to a limit, as
+     * scanForward. Returns the leftmost position where it accepts, or the end if it never
+     * accepts.
+     */
+    private static int scanBackward(TransitionTable transitionTable, char[] buffer, CharSequence input,
+            int position, int limit, MatchBudget budget) {
 
-                regexMatcher.setMatchLength(position - matchStartPosition);
+        if (buffer != null) {
+            return scanBackward(transitionTable, buffer, position, limit, budget);
+        }
+        if (input instanceof CharBuffer) {
+            return scanBackward(transitionTable, (CharBuffer) input, position, limit, budget);
+        }
+        return scanBackward(transitionTable, input, position, limit, budget);
+    }
+
+    static int scanBackward(TransitionTable transitionTable, char[] buffer, int position, int limit,
+            MatchBudget budget) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchStartPosition = position;
+
+        while (position > limit) {
+
+            int blockStart = position;
+            int blockEnd = blockStart(position, limit, budget);
+
+            while (position > blockEnd) {
+
+                int charClass = classMap.classOf(buffer[position - 1]);
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = transitionTable.computeNext(currentState, charClass, position - 1);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, blockStart - position);
+                    return matchStartPosition;
+                }
+
+                currentState = nextState;
+                position--;
+                if (accepting[currentState]) {
+                    matchStartPosition = position;
+                }
+            }
+            if (budget != null && !budget.spend(blockStart - position)) {
+                return BUDGET_EXPIRED;
+            }
+        }
+        return matchStartPosition;
+    }
+
+    private static int scanBackward(TransitionTable transitionTable, CharSequence input, int position, int limit,
+            MatchBudget budget) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchStartPosition = position;
+
+        while (position > limit) {
+
+            int blockStart = position;
+            int blockEnd = blockStart(position, limit, budget);
+
+            while (position > blockEnd) {
+
+                int charClass = classMap.classOf(input.charAt(position - 1));
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = transitionTable.computeNext(currentState, charClass, position - 1);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, blockStart - position);
+                    return matchStartPosition;
+                }
+
+                currentState = nextState;
+                position--;
+                if (accepting[currentState]) {
+                    matchStartPosition = position;
+                }
+            }
+            if (budget != null && !budget.spend(blockStart - position)) {
+                return BUDGET_EXPIRED;
+            }
+        }
+        return matchStartPosition;
+    }
+
+    private static int scanBackward(TransitionTable transitionTable, CharBuffer buffer, int position, int limit,
+            MatchBudget budget) {
+
+        final int base = buffer.position();
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchStartPosition = position;
+
+        while (position > limit) {
+
+            int blockStart = position;
+            int blockEnd = blockStart(position, limit, budget);
+
+            while (position > blockEnd) {
+
+                int charClass = classMap.classOf(buffer.get(base + position - 1));
+                int nextState = table[currentState * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = transitionTable.computeNext(currentState, charClass, position - 1);
+                    table = transitionTable.getTable();
+                    accepting = transitionTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    spend(budget, blockStart - position);
+                    return matchStartPosition;
+                }
+
+                currentState = nextState;
+                position--;
+                if (accepting[currentState]) {
+                    matchStartPosition = position;
+                }
+            }
+            if (budget != null && !budget.spend(blockStart - position)) {
+                return BUDGET_EXPIRED;
             }
         }
+        return matchStartPosition;
+    }
+
+    /*
+     * End of the block scanned forward before the budget is checked. Without budget, input is a
+     * single block.
+     */
+    private static int blockEnd(int position, int end, MatchBudget budget) {
+        return budget != null && end - position > MatchBudget.CHECK_INTERVAL ? position
+                + MatchBudget.CHECK_INTERVAL : end;
+    }
+
+    /*
+     * Start of the block scanned backwards before the budget is checked.
+     */
+    private static int blockStart(int position, int limit, MatchBudget budget) {
+        return budget != null && position - limit > MatchBudget.CHECK_INTERVAL ? position
+                - MatchBudget.CHECK_INTERVAL : limit;
+    }
+
+    /*
+     * Counts characters examined before a scan stops by itself. Budget is checked by the next
+     * scan.
+     */
+    private static void spend(MatchBudget budget, int chars) {
+        if (budget != null) {
+            budget.spend(chars);
+        }
+    }
+
+    /**
+     * Search automaton executed by match. Subclasses may return a different table for each thread.
+     */
+    TransitionTable searchTable() {
+        return searchTable;
+    }
+
+    /**
+     * Reverse automaton executed by match. Subclasses may return a different table for each thread.
+     */
+    TransitionTable reverseTable() {
+        return reverseTable;
+    }
 
-        return match;
+    Prefilter prefilter() {
+        return prefilter;
     }
 
-    private Transition matchTransition(char c, State pState) {
+    /**
+     * Statistics of the compilation of this regex: time spent in each phase and size of its
+     * automata.
+     * 
+     * @return statistics.
+     */
+    public CompileStats getCompileStats() {
+        return compileStats;
+    }
+
+    void setCompileStats(CompileStats pCompileStats) {
+        compileStats = pCompileStats;
+    }
 
-        Iterable<Transition> transitionList = pState.getTransitions();
-        if (transitionList != null) {
-            for (Transition t : pState.getTransitions()) {
-                if (t.match(c)) {
-                    return t;
+    /**
+     * Syntax tree of the regex, parsed on first call if the regex was loaded from a bundle.
+     */
+    ASTNode syntaxTree() {
+
+        ASTNode tree = syntaxTree;
+        if (tree == null) {
+            synchronized (lazyLock) {
+                tree = syntaxTree;
+                if (tree == null) {
+                    tree = RegexEngine.parse(expression);
+                    syntaxTree = tree;
                 }
             }
         }
+        return tree;
+    }
+
+    /**
+     * Size of caches of states built on demand, or 0 if this regex does not build states while
+     * matching.
+     */
+    int lazyCacheStates() {
+        return 0;
+    }
 
-        return null;
+    /**
+     * Approximate size of the compiled regex, in transition table entries. Used as weight by
+     * {@link RegexCache}.
+     */
+    int getWeight() {
+        return searchTable.getStateCount() * searchTable.getClassCount() + reverseTable.getStateCount()
+                * reverseTable.getClassCount();
     }
 
     /**
@@ -131,7 +990,13 @@ public class Regex {
     public String toString() {
 
         StringBuilder graphvizBuffer = new StringBuilder();
-        graphvizBuffer.append("digraph g {\n").append(finiteAutomaton).append("}\n");
+        Automaton automaton = finiteAutomaton;
+        if (automaton == null) {
+            // literal regexes and regexes loaded from a bundle keep no automaton
+            automaton = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateSearchDFA(AutomatonBuilder
+                    .generateFromAST(syntaxTree())));
+        }
+        graphvizBuffer.append("digraph g {\n").append(automaton).append("}\n");
         return graphvizBuffer.toString();
     }
 
@@ -0,0 +1,215 @@
+package aleamb.regexengine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Binary file of compiled regexes, built once and loaded without running the compiler.
+ *
+ * Regexes compiled in {@link ExecutionMode#DFA} mode are stored with their search and reverse
+ * transition tables and their prefilter, so loading them only copies tables and prefilter. Their
+ * expression is parsed the first time it is needed: by {@link Regex#toString()} and by searches
+ * over UTF-8 bytes or streams. Other regexes, literal or in {@link ExecutionMode#LAZY_DFA} and
+ * {@link ExecutionMode#NFA} modes, build no table at compile time: they are stored as their
+ * expression and options and compiled again when loaded, which is cheap.
+ *
+ * Format is big endian and every array starts at an offset multiple of 4 bytes, so tables are
+ * copied in bulk from a memory mapped file. Processes that load the same file share its pages
+ * through the page cache of the operating system.
+ */
+public final class RegexBundle {
+
+    // "SRE1"
+    private static final int MAGIC = 0x53524531;
+
+    private static final int VERSION = 2;
+
+    // regex stored with its transition tables
+    private static final int KIND_TABLES = 0;
+
+    // regex stored as its expression and compiled on load
+    private static final int KIND_EXPRESSION = 1;
+
+    private static final int FLAG_PREFILTER = 1;
+
+    private RegexBundle() {
+    }
+
+    /**
+     * Writes compiled regexes to a stream.
+     *
+     * @param regexes regexes compiled by {@link RegexEngine#compile(String, RegexOptions)}.
+     * @param out output stream. It is not closed.
+     * @throws IOException on write error.
+     * @throws IllegalArgumentException if a regex was not compiled by {@link RegexEngine}.
+     */
+    public static void write(List<Regex> regexes, OutputStream out) throws IOException {
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(regexes.size());
+
+        for (Regex regex : regexes) {
+            CompileStats stats = regex.getCompileStats();
+            if (stats == null) {
+                throw new IllegalArgumentException("Regex was not compiled by RegexEngine");
+            }
+            boolean tables = regex.getClass() == Regex.class;
+            String expression = stats.getExpression();
+
+            data.writeInt(tables ? KIND_TABLES : KIND_EXPRESSION);
+            data.writeInt(expression.length());
+            data.writeChars(expression);
+            if (expression.length() % 2 != 0) {
+                data.writeChar(0);
+            }
+            data.writeInt(ExecutionMode.valueOf(stats.getExecutionMode()).ordinal());
+            data.writeInt(regex.prefilter() != null ? FLAG_PREFILTER : 0);
+            data.writeInt(regex.lazyCacheStates());
+            if (tables) {
+                regex.searchTable().write(data);
+                regex.reverseTable().write(data);
+                if (regex.prefilter() != null) {
+                    regex.prefilter().write(data);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes compiled regexes to a file.
+     *
+     * @param regexes regexes compiled by {@link RegexEngine#compile(String, RegexOptions)}.
+     * @param file output file, replaced if it exists.
+     * @throws IOException on write error.
+     * @throws IllegalArgumentException if a regex was not compiled by {@link RegexEngine}.
+     */
+    public static void write(List<Regex> regexes, File file) throws IOException {
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            write(regexes, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads regexes written by {@link #write(List, OutputStream)}, from the position of a buffer.
+     * Buffer is not kept by loaded regexes.
+     *
+     * @param buffer input buffer.
+     * @return regexes, in the order they were written.
+     * @throws IOException if data is not a valid bundle.
+     */
+    public static List<Regex> read(ByteBuffer buffer) throws IOException {
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a regex bundle");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported regex bundle version: " + version);
+            }
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new IOException("Corrupt regex bundle: negative count");
+            }
+            List<Regex> regexes = new ArrayList<Regex>();
+            for (int i = 0; i < count; i++) {
+                regexes.add(readRegex(buffer));
+            }
+            return regexes;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt regex bundle: " + e.getMessage());
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt regex bundle: unexpected end");
+        } catch (RegexException e) {
+            throw new IOException("Corrupt regex bundle: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads regexes written by {@link #write(List, File)}. File is memory mapped.
+     *
+     * @param file bundle file.
+     * @return regexes, in the order they were written.
+     * @throws IOException if file can not be read or is not a valid bundle.
+     */
+    public static List<Regex> read(File file) throws IOException {
+
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    private static Regex readRegex(ByteBuffer buffer) throws IOException {
+
+        int kind = buffer.getInt();
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / 2) {
+            throw new IOException("Corrupt regex bundle: expression length");
+        }
+        char[] chars = new char[length];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + 2 * (length + length % 2));
+        String expression = new String(chars);
+
+        int mode = buffer.getInt();
+        if (mode < 0 || mode >= ExecutionMode.values().length) {
+            throw new IOException("Corrupt regex bundle: execution mode");
+        }
+        boolean prefilter = (buffer.getInt() & FLAG_PREFILTER) != 0;
+        int lazyCacheStates = buffer.getInt();
+
+        if (kind == KIND_EXPRESSION) {
+            RegexOptions options = new RegexOptions();
+            options.setExecutionMode(ExecutionMode.values()[mode]);
+            options.setPrefilter(prefilter);
+            if (lazyCacheStates > 0) {
+                options.setLazyCacheStates(lazyCacheStates);
+            }
+            return RegexEngine.compile(expression, options);
+        }
+        if (kind != KIND_TABLES) {
+            throw new IOException("Corrupt regex bundle: unknown kind " + kind);
+        }
+
+        CompileStats stats = new CompileStats(expression);
+        long time = System.nanoTime();
+        TransitionTable searchTable = TransitionTable.read(buffer);
+        TransitionTable reverseTable = TransitionTable.read(buffer);
+        Prefilter searchPrefilter = prefilter ? Prefilter.read(buffer) : null;
+        stats.setTableNanos(System.nanoTime() - time);
+
+        stats.setExecutionMode(ExecutionMode.DFA);
+        stats.setDFAStateCount(searchTable.getStateCount() + reverseTable.getStateCount());
+        stats.setClassCount(searchTable.getClassCount());
+        stats.setEstimatedBytes(searchTable.getEstimatedBytes() + reverseTable.getEstimatedBytes());
+
+        Regex regex = new Regex(expression, searchTable, reverseTable, searchPrefilter);
+        regex.setCompileStats(stats);
+        return regex;
+    }
+
+}
@@ -0,0 +1,223 @@
+package aleamb.regexengine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of compiled regular expressions keyed by pattern text.
+ *
+ * Cache is bounded by number of entries and, optionally, by weight. Weight of an entry is the
+ * size of its transition table, so a few large automata take as much room as many small ones.
+ * When a bound is exceeded the least recently used entries are evicted.
+ *
+ * Entries are spread over independent segments, each one with its own lock, so threads that
+ * look up different patterns rarely wait for each other. Bounds apply to the whole cache: a
+ * write evicts from its own segment first and then from the others. Eviction order is kept per
+ * segment, which is an approximation of a global LRU order. Patterns are compiled outside of the lock:
+ * if two threads miss the same pattern at the same time both compile it and only one result is
+ * kept.
+ *
+ * Hit, miss and eviction counters are updated atomically and can be read at any time.
+ */
+public class RegexCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final RegexOptions options;
+
+    private final Segment[] segments;
+
+    private final int maximumSize;
+    private final long maximumWeight;
+
+    // totals of all segments, checked against the bounds
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a cache bounded by number of entries, for regexes compiled with default options.
+     *
+     * @param maximumSize maximum number of compiled regexes.
+     */
+    public RegexCache(int maximumSize) {
+        this(maximumSize, Long.MAX_VALUE, new RegexOptions());
+    }
+
+    /**
+     * Creates a cache bounded by number of entries and total weight.
+     *
+     * @param pMaximumSize maximum number of compiled regexes.
+     * @param pMaximumWeight maximum sum of transition table sizes.
+     * @param pOptions options used to compile every pattern of this cache. They must not be
+     *            modified after creating the cache.
+     */
+    public RegexCache(int pMaximumSize, long pMaximumWeight, RegexOptions pOptions) {
+
+        if (pMaximumSize <= 0 || pMaximumWeight <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        options = pOptions;
+        maximumSize = pMaximumSize;
+        maximumWeight = pMaximumWeight;
+
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= maximumSize) {
+            segmentCount *= 2;
+        }
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns compiled regex for a pattern, compiling it if it is not in the cache.
+     *
+     * @param regexExpr regex expression.
+     * @return compiled regex.
+     * @throws RegexException on compilation error. Failed patterns are not cached.
+     */
+    public Regex compile(String regexExpr) throws RegexException {
+
+        Segment segment = segmentFor(regexExpr);
+
+        Regex regex = segment.get(regexExpr);
+        if (regex != null) {
+            hitCount.incrementAndGet();
+            return regex;
+        }
+        missCount.incrementAndGet();
+
+        regex = RegexEngine.compile(regexExpr, options);
+        Regex cached = segment.put(regexExpr, regex);
+        if (cached == regex) {
+            evict(segment);
+        }
+        return cached;
+    }
+
+    /**
+     * @return compiled regex for a pattern, or null if it is not in the cache.
+     */
+    public Regex getIfPresent(String regexExpr) {
+        return segmentFor(regexExpr).get(regexExpr);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return sum of weights of cached regexes.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private boolean isOverBounds() {
+        return size.get() > maximumSize || weight.get() > maximumWeight;
+    }
+
+    /*
+     * Evicts from other segments while the written one holds only its new entry and the cache
+     * still exceeds its bounds. Then the new entry itself goes if it is heavier than the whole
+     * cache. Segments are locked one at a time.
+     */
+    private void evict(Segment written) {
+        for (Segment segment : segments) {
+            if (!isOverBounds()) {
+                return;
+            }
+            if (segment != written) {
+                segment.evict(null);
+            }
+        }
+        written.evict(null);
+    }
+
+    private Segment segmentFor(String regexExpr) {
+        int hash = regexExpr.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /*
+     * Part of the cache protected by its own lock. Map is kept in access order, so first entry
+     * is the least recently used.
+     */
+    private final class Segment {
+
+        private final LinkedHashMap<String, Regex> entries = new LinkedHashMap<String, Regex>(16, 0.75f, true);
+
+        synchronized Regex get(String regexExpr) {
+            return entries.get(regexExpr);
+        }
+
+        synchronized Regex put(String regexExpr, Regex regex) {
+
+            Regex previous = entries.get(regexExpr);
+            if (previous != null) {
+                // compiled by another thread meanwhile
+                return previous;
+            }
+            entries.put(regexExpr, regex);
+            size.incrementAndGet();
+            weight.addAndGet(regex.getWeight());
+
+            evict(regexExpr);
+            return regex;
+        }
+
+        /*
+         * Evicts least recently used entries, except the one of a pattern, while the cache
+         * exceeds its bounds.
+         */
+        synchronized void evict(String keptExpr) {
+
+            Iterator<Map.Entry<String, Regex>> iterator = entries.entrySet().iterator();
+            while (isOverBounds() && iterator.hasNext()) {
+                Map.Entry<String, Regex> eldest = iterator.next();
+                if (!eldest.getKey().equals(keptExpr)) {
+                    iterator.remove();
+                    size.decrementAndGet();
+                    weight.addAndGet(-eldest.getValue().getWeight());
+                    evictionCount.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (Regex regex : entries.values()) {
+                size.decrementAndGet();
+                weight.addAndGet(-regex.getWeight());
+            }
+            entries.clear();
+        }
+    }
+
+}
@@ -1,10 +1,18 @@
 package aleamb.regexengine;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import aleamb.regexengine.fa.Automaton;
 import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.fa.LazyDFA;
+import aleamb.regexengine.fa.NFAProgram;
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.fa.TransitionTable;
 import aleamb.regexengine.parser.ASTNode;
 import aleamb.regexengine.parser.LexicalAnalyzer;
 import aleamb.regexengine.parser.Parser;
@@ -12,11 +20,24 @@ import aleamb.regexengine.parser.Parser;
 /**
  * Simple regex engine for a tiny subset of PCRE.
  * 
+ * Every call to compile builds the automaton again. Applications that compile the same
+ * patterns many times can keep compiled regexes in a {@link RegexCache}.
+ * 
  */
 public class RegexEngine {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(RegexEngine.class);
 
+    // Cost model of AUTO mode, in units of one automaton state visited for one character.
+    // Building a deterministic automaton has a fixed cost (character classes) plus a cost per
+    // nondeterministic state; simulation costs one unit per state and character.
+    private final static long DFA_FIXED_COST = 1 << 16;
+    private final static long DFA_COST_PER_STATE = 256;
+
+    // Above this number of nondeterministic states, AUTO mode avoids building the whole
+    // deterministic automaton, which may grow exponentially.
+    private final static int LAZY_DFA_MIN_STATES = 2000;
+
     /**
      * Compiles regular expression.
      * 
@@ -88,18 +109,299 @@ public class RegexEngine {
      */
     public static Regex compile(String regexExpr) throws RegexException {
 
+        return compile(regexExpr, new RegexOptions());
+    }
+
+    /**
+     * Compiles regular expression with options.
+     * 
+     * @param regexExpr regex expression
+     * @param options compilation options. See {@link RegexOptions}.
+     * @return Compiled Regular Expression.
+     * @throws RegexException on compilation error.
+     * @throws CompileLimitException if a limit of options is exceeded.
+     * @see #compile(String)
+     */
+    public static Regex compile(String regexExpr, RegexOptions options) throws RegexException {
+
+        CompileStats stats = new CompileStats(regexExpr);
+        Regex regex = compile(regexExpr, options, stats);
+        regex.setCompileStats(stats);
+        LOGGER.debug("Compile statistics: {}", stats);
+
+        CompileListener listener = options.getCompileListener();
+        if (listener != null) {
+            listener.compiled(stats);
+        }
+        return regex;
+    }
+
+    private static Regex compile(String regexExpr, RegexOptions options, CompileStats stats) {
+
+        final long startTime = System.nanoTime();
+        long time = startTime;
+        ASTNode syntaxNodeTree = parse(regexExpr);
+        stats.setParseNanos(System.nanoTime() - time);
+
+        if (options.getExecutionMode() == ExecutionMode.AUTO) {
+            List<String> literals = Literals.fromAST(syntaxNodeTree);
+            if (literals != null && !literals.contains("")) {
+                LOGGER.debug("Literal search: {} literals", literals.size());
+                stats.setLiteral(true);
+                return literals.size() == 1 ? new LiteralRegex(syntaxNodeTree, literals.get(0))
+                        : new LiteralSetRegex(syntaxNodeTree, literals);
+            }
+        }
+
+        time = System.nanoTime();
+        Automaton nfa = generateNFA(syntaxNodeTree);
+        checkNFAStates(nfa, options);
+        stats.setNFAStateCount(nfa.getStateCount());
+        stats.setAlphabetSize(nfa.getAlphabetSize());
+
+        ExecutionMode executionMode = selectExecutionMode(nfa, options);
+        LOGGER.debug("Execution mode: {}", executionMode);
+        stats.setExecutionMode(executionMode);
+
+        Prefilter prefilter = options.isPrefilter() ? Prefilter.fromNFA(nfa) : null;
+        LOGGER.debug("Prefilter: {}", prefilter);
+
+        if (executionMode == ExecutionMode.NFA) {
+            NFAProgram program = AutomatonBuilder.generateNFAProgram(nfa);
+            stats.setNFANanos(System.nanoTime() - time);
+            return new NFARegex(syntaxNodeTree, nfa, program, prefilter, options.getLazyCacheStates());
+        }
+        if (executionMode == ExecutionMode.LAZY_DFA) {
+            LazyDFA lazyDfa = AutomatonBuilder.generateLazyDFA(nfa);
+            stats.setNFANanos(System.nanoTime() - time);
+            stats.setClassCount(lazyDfa.getClassCount());
+            return new LazyRegex(syntaxNodeTree, nfa, lazyDfa, prefilter, options.getLazyCacheStates());
+        }
+        stats.setNFANanos(System.nanoTime() - time);
+
+        time = System.nanoTime();
+        Automaton dfa;
+        Automaton reverseDfa;
+        try {
+            dfa = AutomatonBuilder.generateSearchDFA(nfa, options.getMaxDFAStates(), remainingTime(options, startTime));
+            reverseDfa = AutomatonBuilder.generateDFAFromNFA(AutomatonBuilder.generateReverseNFA(nfa),
+                    options.getMaxDFAStates(), remainingTime(options, startTime));
+        } catch (CompileLimitException e) {
+            if (options.getExecutionMode() != ExecutionMode.AUTO) {
+                throw e;
+            }
+            // states will be built while matching, bounded by the lazy cache
+            LOGGER.debug("{}. Falling back to lazy deterministic automaton", e.getMessage());
+            stats.setDFANanos(System.nanoTime() - time);
+            stats.setExecutionMode(ExecutionMode.LAZY_DFA);
+            LazyDFA lazyDfa = AutomatonBuilder.generateLazyDFA(nfa);
+            stats.setClassCount(lazyDfa.getClassCount());
+            return new LazyRegex(syntaxNodeTree, nfa, lazyDfa, prefilter, options.getLazyCacheStates());
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Deterministic finite automaton:\n digraph dfa {\n{}\n};\n", dfa.toString());
+        }
+        stats.setDFANanos(System.nanoTime() - time);
+
+        if (options.isMinimize()) {
+            time = System.nanoTime();
+            int stateCount = dfa.getStateCount();
+            dfa = AutomatonBuilder.minimizeDFA(dfa);
+            LOGGER.debug("Minimized deterministic finite automaton: {} states before, {} states after", stateCount,
+                    dfa.getStateCount());
+            reverseDfa = AutomatonBuilder.minimizeDFA(reverseDfa);
+            stats.setMinimizeNanos(System.nanoTime() - time);
+        }
+
+        time = System.nanoTime();
+        TransitionTable searchTable = AutomatonBuilder.generateTransitionTable(dfa);
+        TransitionTable reverseTable = AutomatonBuilder.generateTransitionTable(reverseDfa);
+        stats.setTableNanos(System.nanoTime() - time);
+        LOGGER.debug("Transition tables: {} search states, {} reverse states, {} character classes",
+                new Object[] { searchTable.getStateCount(), reverseTable.getStateCount(),
+                        searchTable.getClassCount() });
+
+        stats.setDFAStateCount(searchTable.getStateCount() + reverseTable.getStateCount());
+        stats.setClassCount(searchTable.getClassCount());
+        stats.setEstimatedBytes(searchTable.getEstimatedBytes() + reverseTable.getEstimatedBytes());
+        return new Regex(syntaxNodeTree, dfa, searchTable, reverseTable, prefilter);
+    }
+
+    /**
+     * Compiles a set of regular expressions into a single automaton.
+     * 
+     * @param regexExprs regex expressions. Index of each one in the set is its position here.
+     * @return Compiled set.
+     * @throws RegexException on compilation error of any expression.
+     * @see #compileSet(List, RegexOptions)
+     */
+    public static RegexSet compileSet(String... regexExprs) throws RegexException {
+
+        return compileSet(Arrays.asList(regexExprs), new RegexOptions());
+    }
+
+    /**
+     * Compiles a set of regular expressions into a single automaton, with options.
+     * 
+     * Syntax of each expression is the one of {@link #compile(String)}. {@link ExecutionMode#NFA}
+     * is not available for sets; {@link ExecutionMode#LAZY_DFA} is used instead.
+     * 
+     * @param regexExprs regex expressions. Index of each one in the set is its position here.
+     * @param options compilation options. See {@link RegexOptions}.
+     * @return Compiled set.
+     * @throws RegexException on compilation error of any expression.
+     */
+    public static RegexSet compileSet(List<String> regexExprs, RegexOptions options) throws RegexException {
+
+        return compileSet(regexExprs, options, false);
+    }
+
+    /**
+     * Compiles a tokenizer from an ordered list of token patterns.
+     * 
+     * @param regexExprs regex expression of each token type, in priority order.
+     * @param tokenIds identifier returned for each token type. Must not be negative.
+     * @return Compiled tokenizer.
+     * @throws RegexException on compilation error of any expression.
+     * @see #compileTokenizer(List, int[], RegexOptions)
+     */
+    public static Tokenizer compileTokenizer(String[] regexExprs, int[] tokenIds) throws RegexException {
+
+        return compileTokenizer(Arrays.asList(regexExprs), tokenIds, new RegexOptions());
+    }
+
+    /**
+     * Compiles a tokenizer from an ordered list of token patterns, with options.
+     * 
+     * All patterns are joined in a single automaton anchored at the current position. Each
+     * accepting state returns the token type of the first pattern it accepts, so when two
+     * patterns match the same longest token, the one listed first wins.
+     * 
+     * @param regexExprs regex expression of each token type, in priority order.
+     * @param tokenIds identifier returned for each token type. Must not be negative.
+     * @param options compilation options. See {@link #compileSet(List, RegexOptions)}.
+     * @return Compiled tokenizer.
+     * @throws RegexException on compilation error of any expression.
+     */
+    public static Tokenizer compileTokenizer(List<String> regexExprs, int[] tokenIds, RegexOptions options)
+            throws RegexException {
+
+        if (tokenIds.length != regexExprs.size()) {
+            throw new IllegalArgumentException("Expected " + regexExprs.size() + " token identifiers");
+        }
+        for (int tokenId : tokenIds) {
+            if (tokenId < 0) {
+                throw new IllegalArgumentException("Negative token identifier: " + tokenId);
+            }
+        }
+        return new Tokenizer(compileSet(regexExprs, options, true), tokenIds.clone());
+    }
+
+    private static RegexSet compileSet(List<String> regexExprs, RegexOptions options, boolean anchored) {
+
+        List<Automaton> nfas = new ArrayList<Automaton>(regexExprs.size());
+        final long startTime = System.nanoTime();
+        for (String regexExpr : regexExprs) {
+            nfas.add(generateNFA(parse(regexExpr)));
+        }
+        String[] patterns = regexExprs.toArray(new String[regexExprs.size()]);
+        Automaton nfa = AutomatonBuilder.generateSetNFA(nfas, anchored);
+        checkNFAStates(nfa, options);
+
+        ExecutionMode executionMode = selectExecutionMode(nfa, options);
+        LOGGER.debug("Execution mode of set of {} patterns: {}", patterns.length, executionMode);
+
+        if (executionMode == ExecutionMode.NFA || executionMode == ExecutionMode.LAZY_DFA) {
+            return new LazyRegexSet(patterns, AutomatonBuilder.generateLazySetDFA(nfa), options.getLazyCacheStates());
+        }
+
+        Automaton dfa;
+        try {
+            dfa = AutomatonBuilder.generateDFAFromNFA(nfa, options.getMaxDFAStates(), remainingTime(options, startTime));
+        } catch (CompileLimitException e) {
+            if (options.getExecutionMode() != ExecutionMode.AUTO) {
+                throw e;
+            }
+            LOGGER.debug("{}. Falling back to lazy deterministic automaton", e.getMessage());
+            return new LazyRegexSet(patterns, AutomatonBuilder.generateLazySetDFA(nfa), options.getLazyCacheStates());
+        }
+        if (options.isMinimize()) {
+            int stateCount = dfa.getStateCount();
+            dfa = AutomatonBuilder.minimizeDFA(dfa);
+            LOGGER.debug("Minimized deterministic finite automaton: {} states before, {} states after", stateCount,
+                    dfa.getStateCount());
+        }
+
+        TransitionTable transitionTable = AutomatonBuilder.generateTransitionTable(dfa);
+        LOGGER.debug("Transition table: {} states, {} character classes", transitionTable.getStateCount(),
+                transitionTable.getClassCount());
+        return new RegexSet(patterns, transitionTable);
+    }
+
+    static ASTNode parse(String regexExpr) {
+
         LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(regexExpr);
         Parser syntaxAnalyzer = new Parser(lexicalAnalyzer);
 
         ASTNode syntaxNodeTree = syntaxAnalyzer.analyze();
-        LOGGER.debug("Syntax tree:\n graph g {\n{}\n};\n", syntaxNodeTree.toString());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Syntax tree:\n graph g {\n{}\n};\n", syntaxNodeTree.toString());
+        }
+        return syntaxNodeTree;
+    }
+
+    static Automaton generateNFA(ASTNode syntaxNodeTree) {
 
         Automaton nfa = AutomatonBuilder.generateFromAST(syntaxNodeTree);
-        LOGGER.debug("Nondeterministic finite automaton:\n digraph ndfa {\n{}\n};\n", nfa.toString());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Nondeterministic finite automaton:\n digraph ndfa {\n{}\n};\n", nfa.toString());
+        }
+        return nfa;
+    }
+
+    private static void checkNFAStates(Automaton nfa, RegexOptions options) {
+
+        if (options.getMaxNFAStates() > 0 && nfa.getStateCount() > options.getMaxNFAStates()) {
+            throw new CompileLimitException(CompileLimitException.Limit.NFA_STATES, "Nondeterministic automaton has "
+                    + nfa.getStateCount() + " states, more than " + options.getMaxNFAStates());
+        }
+    }
+
+    /*
+     * Time left for building deterministic automata, in nanoseconds. 0 if
+     * there is no timeout, and at least 1 if timeout is already exceeded, so
+     * the construction stops right away.
+     */
+    private static long remainingTime(RegexOptions options, long startTime) {
+
+        if (options.getCompileTimeout() == 0) {
+            return 0;
+        }
+        long remaining = options.getCompileTimeout() * 1000000L - (System.nanoTime() - startTime);
+        return Math.max(remaining, 1);
+    }
+
+    /**
+     * Resolves {@link ExecutionMode#AUTO}. Simulation is chosen when the expected input is so short
+     * that scanning it with every state costs less than building the deterministic automaton.
+     */
+    static ExecutionMode selectExecutionMode(Automaton nfa, RegexOptions options) {
+
+        if (options.getExecutionMode() != ExecutionMode.AUTO) {
+            return options.getExecutionMode();
+        }
+
+        long stateCount = nfa.getStateList().size();
+        long inputLength = options.getExpectedInputLength();
 
-        Automaton dfa = AutomatonBuilder.generateDFAFromNFA(nfa);
-        LOGGER.debug("Deterministic finite automaton:\n digraph dfa {\n{}\n};\n", dfa.toString());
-        return new Regex(dfa);
+        if (inputLength > 0) {
+            long simulationCost = inputLength * stateCount;
+            long dfaCost = DFA_FIXED_COST + DFA_COST_PER_STATE * stateCount + inputLength;
+            if (simulationCost < dfaCost) {
+                return ExecutionMode.NFA;
+            }
+        }
+        return stateCount >= LAZY_DFA_MIN_STATES ? ExecutionMode.LAZY_DFA : ExecutionMode.DFA;
     }
 
 }
@@ -0,0 +1,189 @@
+package aleamb.regexengine;
+
+/**
+ * Reusable search over an input buffer with a compiled {@link Regex}.
+ *
+ * Each call to {@link #find()} searches the next match from the end of the previous one, and
+ * {@link #start()} and {@link #end()} return its bounds. A matcher can be reset to a new input
+ * with {@link #reset(char[])} or {@link #reset(CharSequence)}, so a thread can keep one matcher
+ * per regex and use it for every input without allocating.
+ *
+ * Matchers are not thread safe. Use one matcher per thread; the {@link Regex} itself can be
+ * shared.
+ */
+public class RegexMatcher {
+
+    private final Regex regex;
+
+    // carries position and bounds of the match between calls to Regex.match
+    private final RegexMatchResult result = new RegexMatchResult();
+
+    // input, either a buffer or a sequence
+    private char[] input;
+
+    private CharSequence sequence;
+
+    // position from which next search starts
+    private int position;
+
+    private boolean matched;
+
+    RegexMatcher(Regex pRegex, char[] pInput) {
+        regex = pRegex;
+        reset(pInput);
+    }
+
+    RegexMatcher(Regex pRegex, CharSequence pInput) {
+        regex = pRegex;
+        reset(pInput);
+    }
+
+    /**
+     * Sets a new input and restarts search from its beginning.
+     *
+     * @param pInput input buffer.
+     * @return this matcher.
+     */
+    public RegexMatcher reset(char[] pInput) {
+        input = pInput;
+        sequence = null;
+        return reset();
+    }
+
+    /**
+     * Sets a character sequence as new input and restarts search from its beginning. The
+     * sequence is not copied, so it must not change while it is searched.
+     *
+     * @param pInput input sequence.
+     * @return this matcher.
+     */
+    public RegexMatcher reset(CharSequence pInput) {
+        input = null;
+        sequence = pInput;
+        return reset();
+    }
+
+    /**
+     * Restarts search from the beginning of current input.
+     *
+     * @return this matcher.
+     */
+    public RegexMatcher reset() {
+        position = 0;
+        matched = false;
+        return this;
+    }
+
+    /**
+     * Searches next match.
+     *
+     * After an empty match, next search starts one character later, so a loop over
+     * {@link #find()} always finishes.
+     *
+     * @return true if a match is found.
+     */
+    public boolean find() {
+
+        int length = inputLength();
+
+        matched = false;
+        if (position <= length) {
+            result.setPosition(position);
+            matched = input != null ? regex.match(input, result) : regex.match(sequence, result);
+        }
+
+        if (matched) {
+            int end = end();
+            position = end == result.getMatchStartPosition() ? end + 1 : end;
+        } else {
+            position = length + 1;
+        }
+        return matched;
+    }
+
+    /**
+     * Searches next match within a budget, as {@link Regex#match(char[], RegexMatchResult, MatchBudget)}.
+     *
+     * If the budget expires, there is no current match and next search starts again from the
+     * same position, so search can be resumed with a new budget.
+     *
+     * @param budget limits of search.
+     * @return status of search.
+     */
+    public MatchStatus find(MatchBudget budget) {
+
+        int length = inputLength();
+
+        matched = false;
+        MatchStatus status = MatchStatus.NO_MATCH;
+        if (position <= length) {
+            result.setPosition(position);
+            status = input != null ? regex.match(input, result, budget) : regex.match(sequence, result, budget);
+        }
+
+        if (status == MatchStatus.MATCH) {
+            matched = true;
+            int end = end();
+            position = end == result.getMatchStartPosition() ? end + 1 : end;
+        } else if (status == MatchStatus.NO_MATCH) {
+            position = length + 1;
+        }
+        return status;
+    }
+
+    /**
+     * Searches next match from a position. Later calls to {@link #find()} continue from this
+     * match.
+     *
+     * @param from position where search starts.
+     * @return true if a match is found.
+     */
+    public boolean find(int from) {
+
+        if (from < 0 || from > inputLength()) {
+            throw new IndexOutOfBoundsException("Illegal start position: " + from);
+        }
+        position = from;
+        return find();
+    }
+
+    /**
+     * @return start position of last match.
+     * @throws IllegalStateException if last search did not find a match.
+     */
+    public int start() {
+        checkMatch();
+        return result.getMatchStartPosition();
+    }
+
+    /**
+     * @return position after the last character of last match.
+     * @throws IllegalStateException if last search did not find a match.
+     */
+    public int end() {
+        checkMatch();
+        return result.getMatchStartPosition() + result.getMatchLength();
+    }
+
+    public Regex getRegex() {
+        return regex;
+    }
+
+    private int inputLength() {
+
+        if (input != null) {
+            return input.length;
+        }
+        if (sequence != null) {
+            return sequence.length();
+        }
+        throw new IllegalStateException("No input");
+    }
+
+    private void checkMatch() {
+        if (!matched) {
+            throw new IllegalStateException("No match available");
+        }
+    }
+
+}
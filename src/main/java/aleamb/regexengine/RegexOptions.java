@@ -0,0 +1,182 @@
+package aleamb.regexengine;
+
+/**
+ * Options for {@link RegexEngine#compile(String, RegexOptions)}.
+ *
+ * Default values are the ones used by {@link RegexEngine#compile(String)}.
+ */
+public class RegexOptions {
+
+    private boolean minimize = true;
+
+    private ExecutionMode executionMode = ExecutionMode.AUTO;
+
+    private int lazyCacheStates = 1024;
+
+    private long expectedInputLength;
+
+    private boolean prefilter = true;
+
+    private CompileListener compileListener;
+
+    private int maxNFAStates;
+
+    private int maxDFAStates;
+
+    private long compileTimeout;
+
+    /**
+     * @return true if deterministic automaton is minimized after powerset
+     *         construction.
+     */
+    public boolean isMinimize() {
+        return minimize;
+    }
+
+    /**
+     * Enables or disables minimization of the deterministic automaton.
+     * Minimization takes some extra time at compile time but gives a smaller
+     * transition table. Enabled by default.
+     *
+     * @param minimize
+     *            true for minimize.
+     */
+    public void setMinimize(boolean minimize) {
+        this.minimize = minimize;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Sets how compiled regex executes its automaton. Default is {@link ExecutionMode#AUTO}.
+     * 
+     * @param executionMode execution mode.
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getLazyCacheStates() {
+        return lazyCacheStates;
+    }
+
+    /**
+     * Sets maximum number of deterministic states kept by each thread in
+     * {@link ExecutionMode#LAZY_DFA} mode. When cache is full, it is flushed. Default is 1024, minimum 3.
+     * 
+     * @param lazyCacheStates number of states.
+     */
+    public void setLazyCacheStates(int lazyCacheStates) {
+        if (lazyCacheStates < 3) {
+            throw new IllegalArgumentException("Lazy cache needs at least 3 states");
+        }
+        this.lazyCacheStates = lazyCacheStates;
+    }
+
+    public long getExpectedInputLength() {
+        return expectedInputLength;
+    }
+
+    /**
+     * Sets total number of characters the compiled regex is expected to scan. Used by
+     * {@link ExecutionMode#AUTO} to decide if building the deterministic automaton pays off. Default
+     * is 0, unknown, which favours the deterministic automaton.
+     * 
+     * @param expectedInputLength number of characters, or 0 if unknown.
+     */
+    public void setExpectedInputLength(long expectedInputLength) {
+        this.expectedInputLength = expectedInputLength;
+    }
+
+    /**
+     * @return true if compiled regex skips to positions where a match may start before running
+     *         its automaton.
+     */
+    public boolean isPrefilter() {
+        return prefilter;
+    }
+
+    /**
+     * Enables or disables the prefilter. When every match starts with the same literal, or with
+     * one of a few characters, search skips input with a fast loop and only runs the automaton
+     * from candidate positions. Enabled by default.
+     * 
+     * @param prefilter true for prefilter.
+     */
+    public void setPrefilter(boolean prefilter) {
+        this.prefilter = prefilter;
+    }
+
+    public CompileListener getCompileListener() {
+        return compileListener;
+    }
+
+    /**
+     * Sets a listener that receives the {@link CompileStats} of every regex compiled with these
+     * options. Default is none; statistics are available from {@link Regex#getCompileStats()}
+     * anyway.
+     * 
+     * @param compileListener listener, or null.
+     */
+    public void setCompileListener(CompileListener compileListener) {
+        this.compileListener = compileListener;
+    }
+
+    public int getMaxNFAStates() {
+        return maxNFAStates;
+    }
+
+    /**
+     * Sets maximum number of states of the nondeterministic automaton. Compile throws
+     * {@link CompileLimitException} for longer expressions. Default is 0, no limit.
+     * 
+     * @param maxNFAStates number of states, or 0.
+     */
+    public void setMaxNFAStates(int maxNFAStates) {
+        if (maxNFAStates < 0) {
+            throw new IllegalArgumentException("Negative number of states");
+        }
+        this.maxNFAStates = maxNFAStates;
+    }
+
+    public int getMaxDFAStates() {
+        return maxDFAStates;
+    }
+
+    /**
+     * Sets maximum number of states of each deterministic automaton built at compile time. In
+     * {@link ExecutionMode#AUTO} mode, an expression whose automaton grows beyond this limit is
+     * compiled in {@link ExecutionMode#LAZY_DFA} mode instead, which bounds its states with the
+     * lazy cache. In {@link ExecutionMode#DFA} mode, compile throws {@link CompileLimitException}.
+     * Default is 0, no limit.
+     * 
+     * @param maxDFAStates number of states, or 0.
+     */
+    public void setMaxDFAStates(int maxDFAStates) {
+        if (maxDFAStates < 0) {
+            throw new IllegalArgumentException("Negative number of states");
+        }
+        this.maxDFAStates = maxDFAStates;
+    }
+
+    public long getCompileTimeout() {
+        return compileTimeout;
+    }
+
+    /**
+     * Sets maximum time of construction of deterministic automata, counted from the start of
+     * compile. When exceeded, compile falls back to {@link ExecutionMode#LAZY_DFA} mode or throws
+     * {@link CompileLimitException}, as with {@link #setMaxDFAStates(int)}. Default is 0, no limit.
+     * 
+     * @param compileTimeout time in milliseconds, or 0.
+     */
+    public void setCompileTimeout(long compileTimeout) {
+        if (compileTimeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        this.compileTimeout = compileTimeout;
+    }
+
+}
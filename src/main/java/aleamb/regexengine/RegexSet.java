@@ -0,0 +1,137 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.CharClassMap;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Set of regular expressions compiled into a single automaton.
+ * 
+ * Applying every pattern of the set to a buffer takes one scan of the buffer, instead of one
+ * scan per pattern. Automata of all patterns are joined under an initial state with a
+ * <code>.*</code> loop and each accepting state knows which patterns it accepts, so the scan
+ * registers the patterns that match and where their first match ends. Use
+ * {@link RegexEngine#compileSet(String...)} for to build a set.
+ * 
+ * A compiled set is immutable and can be shared between threads, like {@link Regex}.
+ */
+public class RegexSet {
+
+    private final String[] patterns;
+
+    // automaton of the whole set, flattened to a table
+    private final TransitionTable transitionTable;
+
+    RegexSet(String[] pPatterns, TransitionTable pTransitionTable) {
+
+        patterns = pPatterns;
+        transitionTable = pTransitionTable;
+    }
+
+    /**
+     * @return number of patterns in the set.
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * @param index index of pattern in the set.
+     * @return regex expression of the pattern.
+     */
+    public String getPattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * Executes every pattern of the set for an input char buffer, in a single scan.
+     * 
+     * If {@link RegexSetMatchResult} is specified, scan starts at its position and it receives
+     * the patterns that matched and the end of their first match; scan stops when every pattern
+     * has matched. Otherwise scan starts at the beginning of buffer and stops at the first match.
+     * 
+     * @param buffer input buffer.
+     * @param result {@link RegexSetMatchResult} that registers matched patterns, or null.
+     * @return true if any pattern matched.
+     */
+    public boolean match(char[] buffer, RegexSetMatchResult result) {
+
+        int position = 0;
+        int remaining = 1;
+
+        if (result != null) {
+            position = result.getPosition();
+            result.reset(patterns.length);
+            remaining = patterns.length;
+        }
+        if (position > buffer.length) {
+            return false;
+        }
+
+        // flattened automaton, read into locals for the inner loop
+        final TransitionTable transitionTable = transitionTable();
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        boolean match = false;
+
+        if (accepting[currentState]) {
+            match = true;
+            remaining -= addMatches(transitionTable, currentState, position, result);
+        }
+
+        while (position < buffer.length && remaining > 0) {
+
+            int charClass = classMap.classOf(buffer[position]);
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                // state not built yet
+                nextState = transitionTable.computeNext(currentState, charClass, position);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            position++;
+            if (accepting[currentState]) {
+                match = true;
+                remaining -= addMatches(transitionTable, currentState, position, result);
+            }
+        }
+
+        return match;
+    }
+
+    /*
+     * Registers patterns accepted by a state. Returns number of patterns that
+     * had not matched before.
+     */
+    private static int addMatches(TransitionTable transitionTable, int state, int position,
+            RegexSetMatchResult result) {
+
+        if (result == null) {
+            return 1;
+        }
+        int added = 0;
+        for (int pattern : transitionTable.getPatterns(state)) {
+            if (result.addMatch(pattern, position)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Table executed by match. Subclasses may return a different table for each thread.
+     */
+    TransitionTable transitionTable() {
+        return transitionTable;
+    }
+
+}
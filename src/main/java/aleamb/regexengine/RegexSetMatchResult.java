@@ -0,0 +1,88 @@
+package aleamb.regexengine;
+
+import java.util.Arrays;
+
+/**
+ * Used by {@link RegexSet#match(char[], RegexSetMatchResult)} for to register which patterns
+ * matched and where.
+ * 
+ * For each pattern it stores the end of its first match, that is, the position after the last
+ * character of the match that ends first. Like {@link RegexMatchResult}, it also points out the
+ * position from where to read buffer. An instance can be reused for many calls.
+ */
+public class RegexSetMatchResult {
+
+    private int position = 0;
+
+    // end of first match of each pattern, -1 if pattern did not match
+    private int[] matchEnds = new int[0];
+
+    private int matchCount;
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * @param pattern index of pattern in the set.
+     * @return true if pattern matched.
+     */
+    public boolean isMatch(int pattern) {
+        return matchEnds[pattern] != -1;
+    }
+
+    /**
+     * @param pattern index of pattern in the set.
+     * @return position after the last character of the first match of pattern, or -1 if pattern
+     *         did not match.
+     */
+    public int getMatchEnd(int pattern) {
+        return matchEnds[pattern];
+    }
+
+    /**
+     * @return number of patterns that matched.
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return indexes of patterns that matched, in ascending order.
+     */
+    public int[] getMatchedPatterns() {
+        int[] matched = new int[matchCount];
+        int count = 0;
+        for (int pattern = 0; pattern < matchEnds.length; pattern++) {
+            if (matchEnds[pattern] != -1) {
+                matched[count++] = pattern;
+            }
+        }
+        return matched;
+    }
+
+    void reset(int patternCount) {
+        if (matchEnds.length != patternCount) {
+            matchEnds = new int[patternCount];
+        }
+        Arrays.fill(matchEnds, -1);
+        matchCount = 0;
+    }
+
+    /*
+     * Registers a match end. Returns false if pattern had already matched.
+     */
+    boolean addMatch(int pattern, int end) {
+        if (matchEnds[pattern] != -1) {
+            return false;
+        }
+        matchEnds[pattern] = end;
+        matchCount++;
+        return true;
+    }
+
+}
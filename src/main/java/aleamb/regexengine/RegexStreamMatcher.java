@@ -0,0 +1,226 @@
+package aleamb.regexengine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import aleamb.regexengine.fa.CharClassMap;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Search of every match of a {@link Regex} in a stream, reading it in chunks.
+ * 
+ * Matches are the same ones a {@link RegexMatcher} finds in the whole input, and they are reported
+ * to a {@link StreamMatchHandler} by their offsets from the beginning of the stream. The search
+ * automaton keeps its state from one chunk to the next one, so a match may span any number of
+ * chunks. Input is kept only from the earliest position where a match still alive may start: it
+ * is found scanning backwards with the reverse automaton of the prefixes of the regex when the
+ * buffer is full. Memory is fixed when the matcher is created, whatever the length of the
+ * stream; a pending match longer than the limit throws {@link MatchTooLongException}.
+ * 
+ * {@link #scan(Reader, StreamMatchHandler)} reads characters and
+ * {@link #scan(InputStream, StreamMatchHandler)} reads UTF-8 bytes without decoding them, as
+ * {@link Regex#match(byte[], RegexMatchResult)}; offsets are then byte offsets.
+ * 
+ * Matchers are not thread safe. Use one matcher per thread; the {@link Regex} itself can be
+ * shared.
+ */
+public class RegexStreamMatcher {
+
+    // characters or bytes read from the stream each time
+    private static final int READ_SIZE = 8192;
+
+    private final Regex regex;
+
+    private final int maxMatchLength;
+
+    // input from the earliest position needed, bytes are stored as characters 0 to 255
+    private final char[] buffer;
+
+    private byte[] bytes;
+
+    RegexStreamMatcher(Regex pRegex, int pMaxMatchLength) {
+
+        if (pMaxMatchLength < 1) {
+            throw new IllegalArgumentException("Illegal maximum match length: " + pMaxMatchLength);
+        }
+        regex = pRegex;
+        maxMatchLength = pMaxMatchLength;
+        buffer = new char[maxMatchLength + Math.max(maxMatchLength, READ_SIZE)];
+    }
+
+    /**
+     * Scans a character stream until its end or until handler stops. Reader is not closed.
+     * 
+     * @param reader input stream.
+     * @param handler receives matches. Offsets are character offsets.
+     * @return number of matches reported.
+     * @throws IOException if reader fails.
+     * @throws MatchTooLongException if a match in progress exceeds the maximum match length.
+     */
+    public long scan(Reader reader, StreamMatchHandler handler) throws IOException {
+        return scan(reader, null, regex.streamSearch(false), handler);
+    }
+
+    /**
+     * Scans a UTF-8 byte stream until its end or until handler stops. Stream is not closed.
+     * 
+     * @param input input stream.
+     * @param handler receives matches. Offsets are byte offsets.
+     * @return number of matches reported.
+     * @throws IOException if input stream fails.
+     * @throws MatchTooLongException if a match in progress exceeds the maximum match length.
+     */
+    public long scan(InputStream input, StreamMatchHandler handler) throws IOException {
+
+        if (bytes == null) {
+            bytes = new byte[READ_SIZE];
+        }
+        return scan(null, input, regex.streamSearch(true), handler);
+    }
+
+    public int getMaxMatchLength() {
+        return maxMatchLength;
+    }
+
+    public Regex getRegex() {
+        return regex;
+    }
+
+    private long scan(Reader reader, InputStream input, StreamSearch search, StreamMatchHandler handler)
+            throws IOException {
+
+        TransitionTable searchTable = search.searchTable();
+        TransitionTable reverseTable = search.reverseTable();
+        TransitionTable prefixTable = search.prefixTable();
+
+        final CharClassMap classMap = searchTable.getClassMap();
+        final int classCount = searchTable.getClassCount();
+        int[] table = searchTable.getTable();
+        boolean[] accepting = searchTable.getAccepting();
+
+        // stream offset of buffer[0] and number of characters in buffer
+        long base = 0;
+        int length = 0;
+        boolean endOfStream = false;
+
+        // search in progress: where it started, next character and last match end
+        long searchStart = 0;
+        long position = 0;
+        int state = searchTable.getInitialState();
+        long matchEnd = accepting[state] ? 0 : -1;
+
+        long matchCount = 0;
+
+        while (true) {
+
+            boolean alive = true;
+            while (position < base + length) {
+
+                int charClass = classMap.classOf(buffer[(int) (position - base)]);
+                int nextState = table[state * classCount + charClass];
+
+                if (nextState == TransitionTable.UNKNOWN) {
+                    nextState = searchTable.computeNext(state, charClass, (int) (position - base));
+                    table = searchTable.getTable();
+                    accepting = searchTable.getAccepting();
+                }
+                if (nextState == TransitionTable.NO_STATE) {
+                    alive = false;
+                    break;
+                }
+
+                state = nextState;
+                position++;
+                if (accepting[state]) {
+                    matchEnd = position;
+                }
+            }
+
+            if (!alive || endOfStream) {
+
+                if (matchEnd == -1) {
+                    // automaton only dies after a match, so input is over
+                    return matchCount;
+                }
+
+                int limit = (int) (Math.max(searchStart, base) - base);
+                long matchStart = base
+                        + Regex.scanBackward(reverseTable, buffer, (int) (matchEnd - base), limit, null);
+                matchCount++;
+                if (!handler.onMatch(matchStart, matchEnd)) {
+                    return matchCount;
+                }
+
+                // next search, one character later after an empty match
+                searchStart = matchEnd == matchStart ? matchEnd + 1 : matchEnd;
+                if (endOfStream && searchStart > base + length) {
+                    return matchCount;
+                }
+                position = searchStart;
+                state = searchTable.getInitialState();
+                matchEnd = accepting[state] ? searchStart : -1;
+                continue;
+            }
+
+            if (length == buffer.length) {
+                long keepFrom = keepFrom(reverseTable, prefixTable, base, length, searchStart, position, matchEnd);
+                int kept = (int) (base + length - keepFrom);
+                System.arraycopy(buffer, length - kept, buffer, 0, kept);
+                base = keepFrom;
+                length = kept;
+            }
+
+            int read = read(reader, input, length);
+            if (read == -1) {
+                endOfStream = true;
+            } else {
+                length += read;
+            }
+        }
+    }
+
+    /*
+     * Earliest stream offset still needed: start of the match found so far and
+     * of every match alive. Called when the buffer is full and every
+     * character in it has been scanned.
+     */
+    private long keepFrom(TransitionTable reverseTable, TransitionTable prefixTable, long base, int length,
+            long searchStart, long position, long matchEnd) {
+
+        long end = base + length;
+        if (position > end) {
+            // after an empty match at the end of buffer
+            return end;
+        }
+
+        int limit = (int) (Math.max(searchStart, base) - base);
+        long keepFrom = base
+                + Regex.scanBackward(prefixTable, buffer, (int) (position - base), limit, null);
+        if (matchEnd != -1) {
+            keepFrom = Math.min(keepFrom, base + Regex.scanBackward(reverseTable, buffer,
+                    (int) (matchEnd - base), limit, null));
+        }
+
+        if (end - keepFrom > maxMatchLength) {
+            throw new MatchTooLongException("Match in progress at offset " + keepFrom + " is longer than "
+                    + maxMatchLength);
+        }
+        return keepFrom;
+    }
+
+    private int read(Reader reader, InputStream input, int offset) throws IOException {
+
+        int size = Math.min(READ_SIZE, buffer.length - offset);
+        if (reader != null) {
+            return reader.read(buffer, offset, size);
+        }
+
+        int read = input.read(bytes, 0, size);
+        for (int i = 0; i < read; i++) {
+            buffer[offset + i] = (char) (bytes[i] & 0xFF);
+        }
+        return read;
+    }
+
+}
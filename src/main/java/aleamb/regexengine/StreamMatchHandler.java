@@ -0,0 +1,17 @@
+package aleamb.regexengine;
+
+/**
+ * Receives the matches found by {@link RegexStreamMatcher}.
+ */
+public interface StreamMatchHandler {
+
+    /**
+     * Called for each match, in stream order.
+     * 
+     * @param start offset of first character of match from the beginning of the stream.
+     * @param end offset after the last character of match.
+     * @return true to continue scanning, false to stop.
+     */
+    boolean onMatch(long start, long end);
+
+}
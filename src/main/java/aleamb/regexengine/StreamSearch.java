@@ -0,0 +1,96 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.fa.LazyDFA;
+import aleamb.regexengine.fa.LazyTransitionTable;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Automata executed by {@link RegexStreamMatcher}.
+ * 
+ * Besides the search and reverse automata of {@link Regex#match(char[], RegexMatchResult)}, a
+ * stream needs the reverse automaton of the prefixes of the regex: scanned backwards from the
+ * current position, it finds the earliest position where a match still alive may start, and
+ * input before it can be discarded.
+ */
+class StreamSearch {
+
+    private final TransitionTable searchTable;
+
+    private final TransitionTable reverseTable;
+
+    private final TransitionTable prefixTable;
+
+    StreamSearch(TransitionTable pSearchTable, TransitionTable pReverseTable, TransitionTable pPrefixTable) {
+        searchTable = pSearchTable;
+        reverseTable = pReverseTable;
+        prefixTable = pPrefixTable;
+    }
+
+    /**
+     * Builds complete deterministic automata.
+     * 
+     * @param nfa nondeterministic automaton, over characters or bytes.
+     */
+    static StreamSearch build(Automaton nfa) {
+
+        Automaton dfa = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateSearchDFA(nfa));
+        Automaton reverseDfa = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateDFAFromNFA(AutomatonBuilder
+                .generateReverseNFA(nfa)));
+        Automaton prefixDfa = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateDFAFromNFA(AutomatonBuilder
+                .generateReversePrefixNFA(nfa)));
+        return new StreamSearch(AutomatonBuilder.generateTransitionTable(dfa),
+                AutomatonBuilder.generateTransitionTable(reverseDfa),
+                AutomatonBuilder.generateTransitionTable(prefixDfa));
+    }
+
+    /**
+     * Builds deterministic states while matching, with a cache for each thread.
+     * 
+     * @param nfa nondeterministic automaton, over characters or bytes.
+     * @param maxStates maximum number of states of each cache.
+     */
+    static StreamSearch buildLazy(Automaton nfa, final int maxStates) {
+
+        final LazyDFA lazyDFA = AutomatonBuilder.generateLazyDFA(nfa);
+        final LazyDFA prefixDFA = AutomatonBuilder.generateLazyDFA(AutomatonBuilder.generateReversePrefixNFA(nfa));
+        final ThreadLocal<LazyTransitionTable[]> tables = new ThreadLocal<LazyTransitionTable[]>() {
+            @Override
+            protected LazyTransitionTable[] initialValue() {
+                return new LazyTransitionTable[] { lazyDFA.newSearchTable(maxStates),
+                        lazyDFA.newReverseTable(maxStates), prefixDFA.newTable(maxStates) };
+            }
+        };
+        return new StreamSearch(null, null, null) {
+
+            @Override
+            TransitionTable searchTable() {
+                return tables.get()[0];
+            }
+
+            @Override
+            TransitionTable reverseTable() {
+                return tables.get()[1];
+            }
+
+            @Override
+            TransitionTable prefixTable() {
+                return tables.get()[2];
+            }
+        };
+    }
+
+    TransitionTable searchTable() {
+        return searchTable;
+    }
+
+    TransitionTable reverseTable() {
+        return reverseTable;
+    }
+
+    TransitionTable prefixTable() {
+        return prefixTable;
+    }
+
+}
@@ -0,0 +1,138 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.CharClassMap;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Reads the tokens of an input buffer with a compiled {@link Tokenizer}.
+ * 
+ * Each call to {@link #nextToken()} runs the automaton of the tokenizer from the end of the
+ * previous token while it is alive, and remembers the last accepting state seen. So every token
+ * costs one scan of its characters plus, at most, the characters read beyond it, and nothing is
+ * allocated. {@link #tokenStart()} and {@link #tokenEnd()} return the bounds of the last token.
+ * 
+ * Patterns that match the empty string never produce empty tokens: a position where only empty
+ * tokens match gives an {@link Tokenizer#INVALID} token.
+ * 
+ * Scanners are not thread safe. Use one scanner per thread; the {@link Tokenizer} itself can be
+ * shared.
+ */
+public class TokenScanner {
+
+    private final Tokenizer tokenizer;
+
+    private char[] input;
+
+    private int position;
+
+    private int tokenStart;
+
+    private int tokenEnd;
+
+    TokenScanner(Tokenizer pTokenizer, char[] pInput) {
+        tokenizer = pTokenizer;
+        reset(pInput);
+    }
+
+    /**
+     * Sets a new input and restarts from its beginning.
+     *
+     * @param pInput input buffer.
+     * @return this scanner.
+     */
+    public TokenScanner reset(char[] pInput) {
+        input = pInput;
+        position = 0;
+        tokenStart = 0;
+        tokenEnd = 0;
+        return this;
+    }
+
+    /**
+     * Reads next token.
+     * 
+     * @return token identifier of the pattern that matches the longest token,
+     *         {@link Tokenizer#INVALID} if no pattern matches at current position, or
+     *         {@link Tokenizer#EOF} at the end of input.
+     */
+    public int nextToken() {
+
+        if (input == null) {
+            throw new IllegalStateException("No input");
+        }
+
+        tokenStart = position;
+        if (position >= input.length) {
+            tokenEnd = position;
+            return Tokenizer.EOF;
+        }
+
+        // flattened automaton, read into locals for the inner loop
+        final TransitionTable transitionTable = tokenizer.transitionTable();
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+        final int[] tokenIds = tokenizer.tokenIds();
+        final char[] buffer = input;
+
+        int currentState = transitionTable.getInitialState();
+        int token = Tokenizer.INVALID;
+        int end = position + 1;
+
+        int i = position;
+        while (i < buffer.length) {
+
+            int charClass = classMap.classOf(buffer[i]);
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                // state not built yet
+                nextState = transitionTable.computeNext(currentState, charClass, i);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            i++;
+            if (accepting[currentState]) {
+                // first pattern accepted has the highest priority
+                token = tokenIds[transitionTable.getPatterns(currentState)[0]];
+                end = i;
+            }
+        }
+
+        position = end;
+        tokenEnd = end;
+        return token;
+    }
+
+    /**
+     * @return start position of last token.
+     */
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return position after the last character of last token.
+     */
+    public int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return position where next token starts.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+}
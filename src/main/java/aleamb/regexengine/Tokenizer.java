@@ -0,0 +1,90 @@
+package aleamb.regexengine;
+
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Compiled tokenizer: an ordered list of token patterns joined in a single deterministic
+ * automaton.
+ * 
+ * Tokens are read with a {@link TokenScanner}, which takes at each position the longest token
+ * that any pattern matches (maximal munch). If several patterns match that token, the one listed
+ * first wins. Use {@link RegexEngine#compileTokenizer(String[], int[])} for to build a tokenizer.
+ * 
+ * A compiled tokenizer is immutable and can be shared between threads. Scanners are not.
+ */
+public class Tokenizer {
+
+    /**
+     * Returned by {@link TokenScanner#nextToken()} at the end of input.
+     */
+    public static final int EOF = -1;
+
+    /**
+     * Returned by {@link TokenScanner#nextToken()} for a character that does not start any token.
+     * Scanner skips that character, so tokenizing can go on.
+     */
+    public static final int INVALID = -2;
+
+    // anchored set of token patterns
+    private final RegexSet patternSet;
+
+    private final int[] tokenIds;
+
+    Tokenizer(RegexSet pPatternSet, int[] pTokenIds) {
+
+        patternSet = pPatternSet;
+        tokenIds = pTokenIds;
+    }
+
+    /**
+     * Creates a scanner without input. Call {@link TokenScanner#reset(char[])} before reading
+     * tokens.
+     * 
+     * @return new scanner for this tokenizer.
+     */
+    public TokenScanner scanner() {
+        return new TokenScanner(this, null);
+    }
+
+    /**
+     * Creates a scanner for an input buffer.
+     * 
+     * @param buffer input buffer.
+     * @return new scanner for this tokenizer.
+     */
+    public TokenScanner scanner(char[] buffer) {
+        return new TokenScanner(this, buffer);
+    }
+
+    /**
+     * @return number of token patterns.
+     */
+    public int size() {
+        return tokenIds.length;
+    }
+
+    /**
+     * @param index index of token pattern.
+     * @return regex expression of the token pattern.
+     */
+    public String getPattern(int index) {
+        return patternSet.getPattern(index);
+    }
+
+    /**
+     * @param index index of token pattern.
+     * @return token identifier of the token pattern.
+     */
+    public int getTokenId(int index) {
+        return tokenIds[index];
+    }
+
+    TransitionTable transitionTable() {
+        return patternSet.transitionTable();
+    }
+
+    int[] tokenIds() {
+        return tokenIds;
+    }
+
+}
@@ -0,0 +1,288 @@
+package aleamb.regexengine;
+
+import java.nio.ByteBuffer;
+
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.fa.CharClassMap;
+import aleamb.regexengine.fa.LazyDFA;
+import aleamb.regexengine.fa.LazyTransitionTable;
+import aleamb.regexengine.fa.TransitionTable;
+
+/**
+ * Search of a regex over UTF-8 bytes.
+ * 
+ * Automata are built from the nondeterministic automaton lowered to bytes by
+ * {@link AutomatonBuilder#generateUtf8NFA(Automaton)}, and executed as in
+ * {@link Regex#match(char[], RegexMatchResult)}: a forward scan finds where the leftmost-longest
+ * match ends and a backward scan finds where it starts. Input is never decoded, and match
+ * positions are byte offsets.
+ */
+class Utf8Search {
+
+    private final TransitionTable searchTable;
+
+    private final TransitionTable reverseTable;
+
+    Utf8Search(TransitionTable pSearchTable, TransitionTable pReverseTable) {
+        searchTable = pSearchTable;
+        reverseTable = pReverseTable;
+    }
+
+    /**
+     * Builds complete deterministic automata.
+     * 
+     * @param utf8Nfa nondeterministic automaton over bytes.
+     */
+    static Utf8Search build(Automaton utf8Nfa) {
+
+        Automaton dfa = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateSearchDFA(utf8Nfa));
+        Automaton reverseDfa = AutomatonBuilder.minimizeDFA(AutomatonBuilder.generateDFAFromNFA(AutomatonBuilder
+                .generateReverseNFA(utf8Nfa)));
+        return new Utf8Search(AutomatonBuilder.generateTransitionTable(dfa),
+                AutomatonBuilder.generateTransitionTable(reverseDfa));
+    }
+
+    /**
+     * Builds deterministic states while matching, with a cache for each thread.
+     * 
+     * @param utf8Nfa nondeterministic automaton over bytes.
+     * @param maxStates maximum number of states of each cache.
+     */
+    static Utf8Search buildLazy(Automaton utf8Nfa, final int maxStates) {
+
+        final LazyDFA lazyDFA = AutomatonBuilder.generateLazyDFA(utf8Nfa);
+        final ThreadLocal<LazyTransitionTable> searchTables = new ThreadLocal<LazyTransitionTable>() {
+            @Override
+            protected LazyTransitionTable initialValue() {
+                return lazyDFA.newSearchTable(maxStates);
+            }
+        };
+        final ThreadLocal<LazyTransitionTable> reverseTables = new ThreadLocal<LazyTransitionTable>() {
+            @Override
+            protected LazyTransitionTable initialValue() {
+                return lazyDFA.newReverseTable(maxStates);
+            }
+        };
+        return new Utf8Search(null, null) {
+
+            @Override
+            TransitionTable searchTable() {
+                return searchTables.get();
+            }
+
+            @Override
+            TransitionTable reverseTable() {
+                return reverseTables.get();
+            }
+        };
+    }
+
+    /**
+     * Matches bytes between <code>offset</code> and <code>offset + length</code>. Positions of
+     * result are relative to offset.
+     */
+    boolean match(byte[] buffer, int offset, int length, RegexMatchResult regexMatcher) {
+
+        int position = 0;
+
+        if (regexMatcher != null) {
+            position = regexMatcher.getPosition();
+        }
+        if (position > length) {
+            return false;
+        }
+
+        int matchEndPosition = scanForward(searchTable(), buffer, offset + position, offset + length);
+        if (matchEndPosition == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            int matchStartPosition = scanBackward(reverseTable(), buffer, matchEndPosition, offset + position);
+            regexMatcher.setMatchStartPosition(matchStartPosition - offset);
+            regexMatcher.setMatchLength(matchEndPosition - matchStartPosition);
+        }
+        return true;
+    }
+
+    /**
+     * Matches bytes between position and limit of buffer, without modifying them. Positions of
+     * result are relative to buffer position.
+     */
+    boolean match(ByteBuffer buffer, RegexMatchResult regexMatcher) {
+
+        if (buffer.hasArray()) {
+            return match(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), regexMatcher);
+        }
+
+        int offset = buffer.position();
+        int position = 0;
+
+        if (regexMatcher != null) {
+            position = regexMatcher.getPosition();
+        }
+        if (position > buffer.remaining()) {
+            return false;
+        }
+
+        int matchEndPosition = scanForward(searchTable(), buffer, offset + position, buffer.limit());
+        if (matchEndPosition == -1) {
+            return false;
+        }
+
+        if (regexMatcher != null) {
+            int matchStartPosition = scanBackward(reverseTable(), buffer, matchEndPosition, offset + position);
+            regexMatcher.setMatchStartPosition(matchStartPosition - offset);
+            regexMatcher.setMatchLength(matchEndPosition - matchStartPosition);
+        }
+        return true;
+    }
+
+    TransitionTable searchTable() {
+        return searchTable;
+    }
+
+    TransitionTable reverseTable() {
+        return reverseTable;
+    }
+
+    /*
+     * Same loops as Regex, over bytes. Byte values are the characters of the
+     * automata.
+     */
+    private static int scanForward(TransitionTable transitionTable, byte[] buffer, int position, int end) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchEndPosition = accepting[currentState] ? position : -1;
+
+        while (position < end) {
+
+            int charClass = classMap.classOf((char) (buffer[position] & 0xFF));
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                nextState = transitionTable.computeNext(currentState, charClass, position);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            position++;
+            if (accepting[currentState]) {
+                matchEndPosition = position;
+            }
+        }
+        return matchEndPosition;
+    }
+
+    private static int scanBackward(TransitionTable transitionTable, byte[] buffer, int position, int limit) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchStartPosition = position;
+
+        while (position > limit) {
+
+            int charClass = classMap.classOf((char) (buffer[position - 1] & 0xFF));
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                nextState = transitionTable.computeNext(currentState, charClass, position - 1);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            position--;
+            if (accepting[currentState]) {
+                matchStartPosition = position;
+            }
+        }
+        return matchStartPosition;
+    }
+
+    // direct buffers, read with absolute gets
+
+    private static int scanForward(TransitionTable transitionTable, ByteBuffer buffer, int position, int end) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchEndPosition = accepting[currentState] ? position : -1;
+
+        while (position < end) {
+
+            int charClass = classMap.classOf((char) (buffer.get(position) & 0xFF));
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                nextState = transitionTable.computeNext(currentState, charClass, position);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            position++;
+            if (accepting[currentState]) {
+                matchEndPosition = position;
+            }
+        }
+        return matchEndPosition;
+    }
+
+    private static int scanBackward(TransitionTable transitionTable, ByteBuffer buffer, int position, int limit) {
+
+        final CharClassMap classMap = transitionTable.getClassMap();
+        int[] table = transitionTable.getTable();
+        boolean[] accepting = transitionTable.getAccepting();
+        final int classCount = transitionTable.getClassCount();
+
+        int currentState = transitionTable.getInitialState();
+        int matchStartPosition = position;
+
+        while (position > limit) {
+
+            int charClass = classMap.classOf((char) (buffer.get(position - 1) & 0xFF));
+            int nextState = table[currentState * classCount + charClass];
+
+            if (nextState == TransitionTable.UNKNOWN) {
+                nextState = transitionTable.computeNext(currentState, charClass, position - 1);
+                table = transitionTable.getTable();
+                accepting = transitionTable.getAccepting();
+            }
+            if (nextState == TransitionTable.NO_STATE) {
+                break;
+            }
+
+            currentState = nextState;
+            position--;
+            if (accepting[currentState]) {
+                matchStartPosition = position;
+            }
+        }
+        return matchStartPosition;
+    }
+
+}
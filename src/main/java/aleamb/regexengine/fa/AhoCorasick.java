@@ -0,0 +1,233 @@
+package aleamb.regexengine.fa;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton for searching a set of literals in one pass.
+ *
+ * The trie of the literals is completed with failure links into a
+ * deterministic automaton, stored in a flat table like
+ * {@link TransitionTable}, over classes of the characters that appear in the
+ * literals. For each state it keeps its depth, the length of the literal
+ * prefix it represents, and the length of the longest literal that ends in
+ * it.
+ *
+ * {@link #search(char[], int)} returns the leftmost-longest occurrence, the
+ * same match an automaton built from the alternation of the literals would
+ * find. It stops as soon as the depth of the current state shows that no
+ * literal starting at or before the best occurrence can still end.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class AhoCorasick {
+
+    private final CharClassMap classMap;
+
+    private final int classCount;
+
+    // next state for each state and class, failures already resolved
+    private final int[] table;
+
+    // length of the prefix of each state
+    private final int[] depth;
+
+    // length of the longest literal ending at each state, 0 if none
+    private final int[] longest;
+
+    private AhoCorasick(CharClassMap pClassMap, int[] pTable, int[] pDepth, int[] pLongest) {
+        classMap = pClassMap;
+        classCount = pClassMap.getClassCount();
+        table = pTable;
+        depth = pDepth;
+        longest = pLongest;
+    }
+
+    /**
+     * Builds the automaton.
+     *
+     * @param literals
+     *            non empty literals.
+     * @return new automaton.
+     */
+    public static AhoCorasick build(List<String> literals) {
+
+        // clase 0 para los caracteres que no aparecen en ningún literal
+        char[] classOfChar = new char[Character.MAX_VALUE + 1];
+        int classCount = 1;
+        int maxStates = 1;
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (classOfChar[c] == 0) {
+                    classOfChar[c] = (char) classCount++;
+                }
+            }
+            maxStates += literal.length();
+        }
+        CharClassMap classMap = new CharClassMap(classOfChar, classCount);
+
+        // trie
+        int[] table = new int[maxStates * classCount];
+        Arrays.fill(table, TransitionTable.NO_STATE);
+        int[] depth = new int[maxStates];
+        int[] longest = new int[maxStates];
+        int stateCount = 1;
+        for (String literal : literals) {
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int index = state * classCount + classOfChar[literal.charAt(i)];
+                if (table[index] == TransitionTable.NO_STATE) {
+                    depth[stateCount] = i + 1;
+                    table[index] = stateCount++;
+                }
+                state = table[index];
+            }
+            longest[state] = literal.length();
+        }
+
+        // enlaces de fallo en anchura: el fallo de un estado es menos profundo
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classCount; c++) {
+            int next = table[c];
+            if (next == TransitionTable.NO_STATE) {
+                table[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int c = 0; c < classCount; c++) {
+                int index = state * classCount + c;
+                int next = table[index];
+                int fallback = table[failure[state] * classCount + c];
+                if (next == TransitionTable.NO_STATE) {
+                    table[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    longest[next] = Math.max(longest[next], longest[fallback]);
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return new AhoCorasick(classMap, Arrays.copyOf(table, stateCount * classCount),
+                Arrays.copyOf(depth, stateCount), Arrays.copyOf(longest, stateCount));
+    }
+
+    /**
+     * Searches leftmost-longest occurrence of any literal.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @return start of occurrence in the high 32 bits and its length in the
+     *         low 32 bits, or -1 if there is none.
+     */
+    public long search(char[] buffer, int from) {
+        return search(buffer, from, buffer.length);
+    }
+
+    /**
+     * Searches leftmost-longest occurrence of any literal before an end
+     * position.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @param end
+     *            position after the last character searched.
+     * @return occurrence as in {@link #search(char[], int)}, or -1.
+     */
+    public long search(char[] buffer, int from, int end) {
+
+        final CharClassMap map = classMap;
+        final int[] next = table;
+        final int[] stateDepth = depth;
+        final int[] stateLongest = longest;
+        final int classes = classCount;
+
+        int state = 0;
+        int bestStart = -1;
+        int bestEnd = -1;
+
+        for (int position = from; position < end; position++) {
+
+            state = next[state * classes + map.classOf(buffer[position])];
+            int matchEnd = position + 1;
+
+            if (stateLongest[state] > 0) {
+                int start = matchEnd - stateLongest[state];
+                if (bestStart == -1 || start <= bestStart) {
+                    bestStart = start;
+                    bestEnd = matchEnd;
+                }
+            }
+            // literals still open started after best occurrence
+            if (bestStart != -1 && matchEnd - stateDepth[state] > bestStart) {
+                break;
+            }
+        }
+
+        return bestStart == -1 ? -1 : ((long) bestStart << 32) | (bestEnd - bestStart);
+    }
+
+    /**
+     * Searches leftmost-longest occurrence of any literal in a character
+     * sequence.
+     *
+     * @param input
+     *            input sequence.
+     * @param from
+     *            position where search starts.
+     * @return occurrence as in {@link #search(char[], int)}, or -1.
+     */
+    public long search(CharSequence input, int from) {
+
+        final CharClassMap map = classMap;
+        final int[] next = table;
+        final int[] stateDepth = depth;
+        final int[] stateLongest = longest;
+        final int classes = classCount;
+        final int end = input.length();
+
+        int state = 0;
+        int bestStart = -1;
+        int bestEnd = -1;
+
+        for (int position = from; position < end; position++) {
+
+            state = next[state * classes + map.classOf(input.charAt(position))];
+            int matchEnd = position + 1;
+
+            if (stateLongest[state] > 0) {
+                int start = matchEnd - stateLongest[state];
+                if (bestStart == -1 || start <= bestStart) {
+                    bestStart = start;
+                    bestEnd = matchEnd;
+                }
+            }
+            if (bestStart != -1 && matchEnd - stateDepth[state] > bestStart) {
+                break;
+            }
+        }
+
+        return bestStart == -1 ? -1 : ((long) bestStart << 32) | (bestEnd - bestStart);
+    }
+
+    public int getStateCount() {
+        return depth.length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+}
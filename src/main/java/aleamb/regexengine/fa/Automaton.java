@@ -34,6 +34,10 @@ import java.util.Set;
  * list is used for transform from nodeterministic automaton to deterministic
  * automaton using Powerset construction algorithm.
  * 
+ * Automata, states and transitions are only modified while
+ * {@link AutomatonBuilder} builds them. Compiled automata are never modified
+ * afterwards, so they can be read from several threads at the same time.
+ * 
  */
 public class Automaton {
 
@@ -88,6 +92,10 @@ public class Automaton {
         return Collections.unmodifiableSet(alphabet);
     }
 
+    public int getAlphabetSize() {
+        return alphabet.size();
+    }
+
     public State getLastState() {
         return lastState;
     }
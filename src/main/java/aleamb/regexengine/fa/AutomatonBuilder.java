@@ -1,11 +1,17 @@
 package aleamb.regexengine.fa;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import aleamb.regexengine.CompileLimitException;
 import aleamb.regexengine.RegexException;
 import aleamb.regexengine.parser.ASTNode;
 import aleamb.regexengine.parser.Token;
@@ -40,6 +46,21 @@ import java.util.Queue;
  */
 public final class AutomatonBuilder {
 
+    // límites del algoritmo subconjunto, sin límite por defecto
+    private final int maxStates;
+    private final long timeoutNanos;
+    private final long startTime;
+
+    public AutomatonBuilder() {
+        this(0, 0);
+    }
+
+    private AutomatonBuilder(int pMaxStates, long pTimeoutNanos) {
+        maxStates = pMaxStates;
+        timeoutNanos = pTimeoutNanos;
+        startTime = pTimeoutNanos > 0 ? System.nanoTime() : 0;
+    }
+
     /**
      * Genera un AFND a partir de la expresión regular.
      * 
@@ -70,6 +91,206 @@ public final class AutomatonBuilder {
 
     }
 
+    /**
+     * Algoritmo subconjunto con límites de número de estados y tiempo.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @param maxStates
+     *            Número máximo de estados, 0 sin límite.
+     * @param timeoutNanos
+     *            Tiempo máximo en nanosegundos, 0 sin límite.
+     * @return Nuevo autómata determinista.
+     * @throws CompileLimitException
+     *            si se supera un límite.
+     */
+    public static Automaton generateDFAFromNFA(Automaton pNDAutomaton, int maxStates, long timeoutNanos) {
+
+        return new AutomatonBuilder(maxStates, timeoutNanos).generateDFA(pNDAutomaton);
+    }
+
+    /**
+     * Genera el autómata determinista de búsqueda no anclada. Ver
+     * {@link SearchSubset}.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Autómata determinista de búsqueda.
+     */
+    public static Automaton generateSearchDFA(Automaton pNDAutomaton) {
+
+        return new AutomatonBuilder().generateSearch(pNDAutomaton);
+    }
+
+    /**
+     * Autómata de búsqueda con límites, como
+     * {@link #generateDFAFromNFA(Automaton, int, long)}.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @param maxStates
+     *            Número máximo de estados, 0 sin límite.
+     * @param timeoutNanos
+     *            Tiempo máximo en nanosegundos, 0 sin límite.
+     * @return Autómata determinista de búsqueda.
+     * @throws CompileLimitException
+     *            si se supera un límite.
+     */
+    public static Automaton generateSearchDFA(Automaton pNDAutomaton, int maxStates, long timeoutNanos) {
+
+        return new AutomatonBuilder(maxStates, timeoutNanos).generateSearch(pNDAutomaton);
+    }
+
+    /**
+     * Une varios autómatas no deterministas para buscar todos los patrones a la
+     * vez. Los estados finales del autómata <code>i</code> se marcan con el
+     * patrón <code>i</code>.
+     * 
+     * @param pNDAutomata
+     *            Autómatas no deterministas, uno por patrón. Pasan a formar parte
+     *            del resultado.
+     * @return Autómata no determinista del conjunto.
+     */
+    public static Automaton generateSetNFA(List<Automaton> pNDAutomata) {
+
+        return generateSetNFA(pNDAutomata, false);
+    }
+
+    /**
+     * Como {@link #generateSetNFA(List)}, con o sin bucle inicial.
+     * 
+     * @param pNDAutomata
+     *            Autómatas no deterministas, uno por patrón.
+     * @param anchored
+     *            true para no añadir el bucle inicial.
+     * @return Autómata no determinista del conjunto.
+     */
+    public static Automaton generateSetNFA(List<Automaton> pNDAutomata, boolean anchored) {
+
+        State initialState = new State();
+        initialState.setInitial(true);
+        if (!anchored) {
+            initialState.connect(new TransitionRange(Character.MIN_VALUE, Character.MAX_VALUE), initialState);
+        }
+
+        for (int i = 0; i < pNDAutomata.size(); i++) {
+            Automaton nfa = pNDAutomata.get(i);
+            for (State state : nfa.getStateList()) {
+                // se renumeran al construir el autómata unido
+                state.setId(-1);
+                if (state.isEnd()) {
+                    state.setPatterns(new int[] { i });
+                }
+            }
+            nfa.getInitialState().setInitial(false);
+            initialState.connect(new TransitionEmpty(), nfa.getInitialState());
+        }
+        return new Automaton(initialState);
+    }
+
+    /**
+     * Prepara el autómata de {@link #generateSetNFA(List)} para construir su
+     * determinista bajo demanda.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista del conjunto.
+     * @return Autómata determinista perezoso.
+     */
+    public static LazyDFA generateLazySetDFA(Automaton pNDAutomaton) {
+
+        return new LazyDFA(new NFATable(pNDAutomaton, CharClassMap.fromTransitions(pNDAutomaton.getAlphabet())),
+                null);
+    }
+
+    /**
+     * Genera el autómata no determinista que reconoce las cadenas invertidas.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Autómata no determinista invertido.
+     */
+    public static Automaton generateReverseNFA(Automaton pNDAutomaton) {
+
+        return new AutomatonBuilder().reverse(pNDAutomaton, false);
+    }
+
+    /**
+     * Genera el autómata no determinista que reconoce los prefijos invertidos.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Autómata no determinista de los prefijos invertidos.
+     */
+    public static Automaton generateReversePrefixNFA(Automaton pNDAutomaton) {
+
+        return new AutomatonBuilder().reverse(pNDAutomaton, true);
+    }
+
+    /**
+     * Traduce un autómata no determinista sobre caracteres UTF-16 a otro
+     * equivalente sobre los bytes de su codificación UTF-8.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Autómata no determinista sobre bytes.
+     */
+    public static Automaton generateUtf8NFA(Automaton pNDAutomaton) {
+
+        return new AutomatonBuilder().lowerToUtf8(pNDAutomaton);
+    }
+
+    /**
+     * Aplana un autómata no determinista para simularlo directamente.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Programa para simular el autómata.
+     */
+    public static NFAProgram generateNFAProgram(Automaton pNDAutomaton) {
+
+        return new NFAProgram(pNDAutomaton);
+    }
+
+    /**
+     * Prepara un autómata no determinista para construir el determinista bajo
+     * demanda.
+     * 
+     * @param pNDAutomaton
+     *            Autómata no determinista.
+     * @return Autómata determinista perezoso.
+     */
+    public static LazyDFA generateLazyDFA(Automaton pNDAutomaton) {
+
+        // las transiciones invertidas son las mismas, y también sus clases
+        CharClassMap alphabet = CharClassMap.fromTransitions(pNDAutomaton.getAlphabet());
+        return new LazyDFA(new NFATable(pNDAutomaton, alphabet),
+                new NFATable(generateReverseNFA(pNDAutomaton), alphabet));
+    }
+
+    /**
+     * Minimiza un autómata determinista con el algoritmo de Hopcroft.
+     * 
+     * @param pDAutomaton
+     *            Autómata determinista.
+     * @return Nuevo autómata determinista mínimo.
+     */
+    public static Automaton minimizeDFA(Automaton pDAutomaton) {
+
+        return new AutomatonBuilder().minimize(pDAutomaton);
+    }
+
+    /**
+     * Aplana un autómata determinista en una tabla de transiciones.
+     * 
+     * @param pDAutomaton
+     *            Autómata determinista.
+     * @return Tabla de transiciones.
+     */
+    public static TransitionTable generateTransitionTable(Automaton pDAutomaton) {
+
+        return new AutomatonBuilder().generateTable(pDAutomaton);
+    }
+
     private Automaton generateNFA(ASTNode node) {
 
         ASTNode rootRegexNode = node.getChildren().iterator().next();
@@ -96,53 +317,57 @@ public final class AutomatonBuilder {
      */
     public Automaton generateDFA(Automaton pNDAutomaton) {
 
-        List<SubSetState> estadosAFD = new LinkedList<SubSetState>();
+        // particionar el alfabeto en clases de caracteres disjuntas, de forma
+        // que cada carácter de entrada pertenezca a un único símbolo
+        CharClassMap alphabet = CharClassMap.fromTransitions(pNDAutomaton.getAlphabet());
+
+        // cierres epsilon precalculados de cada estado
+        NFATable nfa = new NFATable(pNDAutomaton, alphabet);
+
+        // estados agrupados ya creados, indexados por su conjunto de estados
+        Map<BitSet, SubSetState> estadosAFD = new HashMap<BitSet, SubSetState>();
+
+        // estados agrupados pendientes de procesar
+        Queue<SubSetState> pendientes = new ArrayDeque<SubSetState>();
 
         // calcular cierre-epsilon del estado inicial
-        SubSetState S1 = epsilonClosure(pNDAutomaton.getInitialState());
+        SubSetState S1 = createSubSetState(nfa, nfa.getInitialClosure());
 
         S1.setInitial(true);
 
-        estadosAFD.add(S1);
+        estadosAFD.put(S1.getId(), S1);
+        pendientes.add(S1);
 
-        // obetener esatdo no marcado
-        SubSetState subSetState = selectState(estadosAFD);
+        // destino de cada clase desde el estado en proceso
+        State[] classTargets = new State[alphabet.getClassCount()];
 
-        // mientras haya estados no procesados o marcados
-        while (subSetState != null) {
+        // mientras haya estados no procesados
+        while (!pendientes.isEmpty()) {
+
+            SubSetState subSetState = pendientes.poll();
+            checkLimits(estadosAFD.size());
 
             // por cada símbolo 'a' perteneciente al lenguaje
-            for (Transition t : pNDAutomaton.getAlphabet()) {
-
-                if (!(t instanceof TransitionEmpty)) {
-                    // calcular a que estados se va con esta transición desde el
-                    // subonjutno de estados
-                    SubSetState moveState = epsilonMove(pNDAutomaton, subSetState, t);
-                    if (!moveState.isEmpty()) {
-                        SubSetState moCloseState = epsilonClosure(moveState);
-
-                        // comprueba si no existe ya este estado agrupado.
-                        SubSetState euqlState = findState(estadosAFD, moCloseState);
-                        if (euqlState == null) {
-                            estadosAFD.add(moCloseState);
-                        } else {
-                            moCloseState = euqlState;
-                        }
-                        Transition afdTransition;
-                        try {
-                            afdTransition = (Transition) t.clone();
-                        } catch (CloneNotSupportedException e) {
-                            throw new RuntimeException("Fail copying transition");
-                        }
-                        subSetState.getState().connect(afdTransition, moCloseState.getState());
+            for (int charClass = 0; charClass < alphabet.getClassCount(); charClass++) {
+
+                classTargets[charClass] = null;
 
+                // calcular a que estados se va con esta clase desde el
+                // subonjutno de estados, incluyendo su cierre epsilon
+                BitSet moveStates = nfa.move(subSetState.getId(), charClass);
+                if (!moveStates.isEmpty()) {
+
+                    // comprueba si no existe ya este estado agrupado.
+                    SubSetState moCloseState = estadosAFD.get(moveStates);
+                    if (moCloseState == null) {
+                        moCloseState = createSubSetState(nfa, moveStates);
+                        estadosAFD.put(moveStates, moCloseState);
+                        pendientes.add(moCloseState);
                     }
+                    classTargets[charClass] = moCloseState.getState();
                 }
             }
-            subSetState.setMark(true);
-            // siguiente estado sin marcar
-            subSetState = selectState(estadosAFD);
-
+            connectIntervals(subSetState.getState(), alphabet, classTargets);
         }
 
         // construir autómata con los nuevos estados interconectados
@@ -150,6 +375,390 @@ public final class AutomatonBuilder {
         return dfa;
     }
 
+    private Automaton generateSearch(Automaton pNDAutomaton) {
+
+        CharClassMap alphabet = CharClassMap.fromTransitions(pNDAutomaton.getAlphabet());
+        NFATable nfa = new NFATable(pNDAutomaton, alphabet);
+
+        // mismo algoritmo subconjunto, con grupos ordenados en lugar de
+        // conjuntos
+        Map<SearchSubset, State> estadosAFD = new HashMap<SearchSubset, State>();
+        Queue<SearchSubset> pendientes = new ArrayDeque<SearchSubset>();
+
+        SearchSubset start = nfa.getSearchStart(true);
+        State initialState = createSearchState(start);
+        initialState.setInitial(true);
+        estadosAFD.put(start, initialState);
+        pendientes.add(start);
+
+        State[] classTargets = new State[alphabet.getClassCount()];
+
+        while (!pendientes.isEmpty()) {
+
+            SearchSubset subset = pendientes.poll();
+            checkLimits(estadosAFD.size());
+
+            for (int charClass = 0; charClass < alphabet.getClassCount(); charClass++) {
+
+                classTargets[charClass] = null;
+
+                SearchSubset moveStates = nfa.searchMove(subset, charClass);
+                if (!moveStates.isEmpty()) {
+                    State target = estadosAFD.get(moveStates);
+                    if (target == null) {
+                        target = createSearchState(moveStates);
+                        estadosAFD.put(moveStates, target);
+                        pendientes.add(moveStates);
+                    }
+                    classTargets[charClass] = target;
+                }
+            }
+            connectIntervals(estadosAFD.get(subset), alphabet, classTargets);
+        }
+
+        return new Automaton(initialState);
+    }
+
+    /*
+     * Comprueba los límites del algoritmo subconjunto con el número de
+     * estados creados hasta ahora.
+     */
+    private void checkLimits(int stateCount) {
+
+        if (maxStates > 0 && stateCount > maxStates) {
+            throw new CompileLimitException(CompileLimitException.Limit.DFA_STATES,
+                    "Deterministic automaton exceeds " + maxStates + " states");
+        }
+        if (timeoutNanos > 0 && System.nanoTime() - startTime > timeoutNanos) {
+            throw new CompileLimitException(CompileLimitException.Limit.TIME, "Deterministic automaton takes more than "
+                    + timeoutNanos / 1000000 + " ms");
+        }
+    }
+
+    private Automaton reverse(Automaton pNDAutomaton, boolean prefixes) {
+
+        Collection<State> states = pNDAutomaton.getStateList();
+        State[] reversed = new State[states.size()];
+        for (State state : states) {
+            reversed[state.getId()] = new State();
+        }
+
+        // nuevo estado inicial con transiciones vacías a los antiguos finales
+        State initialState = new State();
+        initialState.setInitial(true);
+
+        for (State state : states) {
+            for (Transition t : state.getTransitions()) {
+                reversed[t.getNextState().getId()].connect(copyTransition(t), reversed[state.getId()]);
+            }
+            if (prefixes || state.isEnd()) {
+                initialState.connect(createEmptyTransition(), reversed[state.getId()]);
+            }
+        }
+        reversed[pNDAutomaton.getInitialState().getId()].setEnd(true);
+
+        return new Automaton(initialState);
+    }
+
+    private Automaton lowerToUtf8(Automaton pNDAutomaton) {
+
+        Collection<State> states = pNDAutomaton.getStateList();
+        State[] lowered = new State[states.size()];
+        for (State state : states) {
+            State byteState = new State();
+            byteState.setEnd(state.isEnd());
+            byteState.setPatterns(state.getPatterns());
+            lowered[state.getId()] = byteState;
+        }
+
+        for (State state : states) {
+            for (Transition t : state.getTransitions()) {
+                State target = lowered[t.getNextState().getId()];
+                if (t instanceof TransitionEmpty) {
+                    lowered[state.getId()].connect(createEmptyTransition(), target);
+                    continue;
+                }
+                // una cadena de estados intermedios por secuencia de bytes
+                for (int[] sequence : Utf8Ranges.sequences(t)) {
+                    State from = lowered[state.getId()];
+                    for (int i = 0; i < sequence.length; i += 2) {
+                        State to = i + 2 == sequence.length ? target : new State();
+                        from.connect(new TransitionRange((char) sequence[i], (char) sequence[i + 1]), to);
+                        from = to;
+                    }
+                }
+            }
+        }
+        State initialState = lowered[pNDAutomaton.getInitialState().getId()];
+        initialState.setInitial(true);
+
+        return new Automaton(initialState);
+    }
+
+    /*
+     * Crea las transiciones del estado determinista. Los intervalos contiguos
+     * que van al mismo estado se unen en un único rango, por lo que cada
+     * estado tiene el menor número posible de transiciones y ninguna se
+     * solapa con otra.
+     */
+    private void connectIntervals(State state, CharClassMap alphabet, State[] classTargets) {
+
+        int interval = 0;
+        while (interval < alphabet.getIntervalCount()) {
+            State target = classTargets[alphabet.getIntervalClass(interval)];
+            int lastInterval = interval;
+            while (lastInterval + 1 < alphabet.getIntervalCount()
+                    && classTargets[alphabet.getIntervalClass(lastInterval + 1)] == target) {
+                lastInterval++;
+            }
+            if (target != null) {
+                state.connect(new TransitionRange(alphabet.getIntervalStart(interval), alphabet.getIntervalEnd(lastInterval)),
+                        target);
+            }
+            interval = lastInterval + 1;
+        }
+    }
+
+    private Automaton minimize(Automaton pDAutomaton) {
+
+        CharClassMap alphabet = CharClassMap.fromTransitions(pDAutomaton.getAlphabet());
+        int classCount = alphabet.getClassCount();
+
+        State[] states = pDAutomaton.getStateList().toArray(new State[0]);
+
+        // se añade un estado sumidero para completar la función de transición
+        int deadState = states.length;
+        int stateCount = states.length + 1;
+
+        int[] delta = new int[stateCount * classCount];
+        for (int c = 0; c < classCount; c++) {
+            char representative = alphabet.getRepresentative(c);
+            for (int i = 0; i < states.length; i++) {
+                Transition t = findTransition(states[i], representative);
+                delta[i * classCount + c] = t == null ? deadState : t.getNextState().getId();
+            }
+            delta[deadState * classCount + c] = deadState;
+        }
+
+        // transiciones inversas agrupadas por (clase, destino)
+        int[] inverseStart = new int[classCount * stateCount + 1];
+        for (int i = 0; i < stateCount; i++) {
+            for (int c = 0; c < classCount; c++) {
+                inverseStart[c * stateCount + delta[i * classCount + c] + 1]++;
+            }
+        }
+        for (int i = 1; i < inverseStart.length; i++) {
+            inverseStart[i] += inverseStart[i - 1];
+        }
+        int[] inverse = new int[stateCount * classCount];
+        int[] fill = Arrays.copyOf(inverseStart, inverseStart.length - 1);
+        for (int i = 0; i < stateCount; i++) {
+            for (int c = 0; c < classCount; c++) {
+                inverse[fill[c * stateCount + delta[i * classCount + c]]++] = i;
+            }
+        }
+
+        // partición inicial: estados finales y no finales
+        StatePartition partition = new StatePartition(stateCount);
+        for (int i = 0; i < states.length; i++) {
+            if (states[i].isEnd()) {
+                partition.mark(i);
+            }
+        }
+        partition.split();
+
+        // en un conjunto de patrones, también se separan por patrón aceptado
+        BitSet patterns = new BitSet();
+        for (State state : states) {
+            if (state.getPatterns() != null) {
+                for (int pattern : state.getPatterns()) {
+                    patterns.set(pattern);
+                }
+            }
+        }
+        for (int pattern = patterns.nextSetBit(0); pattern >= 0; pattern = patterns.nextSetBit(pattern + 1)) {
+            for (int i = 0; i < states.length; i++) {
+                if (states[i].getPatterns() != null && Arrays.binarySearch(states[i].getPatterns(), pattern) >= 0) {
+                    partition.mark(i);
+                }
+            }
+            partition.split();
+        }
+
+        Queue<int[]> pending = new LinkedList<int[]>();
+        boolean[] inPending = new boolean[stateCount * classCount];
+        for (int c = 0; c < classCount; c++) {
+            for (int b = 0; b < partition.getBlockCount(); b++) {
+                pending.add(new int[] { b, c });
+                inPending[b * classCount + c] = true;
+            }
+        }
+
+        int[] splitter = new int[stateCount];
+        while (!pending.isEmpty()) {
+
+            int[] entry = pending.poll();
+            int block = entry[0];
+            int charClass = entry[1];
+            inPending[block * classCount + charClass] = false;
+
+            // estados que llegan al bloque con la clase
+            int splitterSize = partition.copyBlock(block, splitter);
+            for (int i = 0; i < splitterSize; i++) {
+                int target = splitter[i];
+                for (int j = inverseStart[charClass * stateCount + target]; j < inverseStart[charClass * stateCount
+                        + target + 1]; j++) {
+                    partition.mark(inverse[j]);
+                }
+            }
+
+            int blocksBefore = partition.getBlockCount();
+            int[] splitBlocks = partition.split();
+            for (int i = 0; i < splitBlocks.length; i++) {
+                int oldBlock = splitBlocks[i];
+                int newBlock = blocksBefore + i;
+                for (int c = 0; c < classCount; c++) {
+                    if (inPending[oldBlock * classCount + c]
+                            || partition.getBlockSize(newBlock) <= partition.getBlockSize(oldBlock)) {
+                        pending.add(new int[] { newBlock, c });
+                        inPending[newBlock * classCount + c] = true;
+                    } else {
+                        pending.add(new int[] { oldBlock, c });
+                        inPending[oldBlock * classCount + c] = true;
+                    }
+                }
+            }
+        }
+
+        // un estado por bloque, excepto el bloque del sumidero
+        int deadBlock = partition.getBlock(deadState);
+        State[] minimalStates = new State[partition.getBlockCount()];
+        for (int i = 0; i < states.length; i++) {
+            int block = partition.getBlock(i);
+            if (minimalStates[block] == null) {
+                minimalStates[block] = new State();
+                minimalStates[block].setEnd(states[i].isEnd());
+                minimalStates[block].setPatterns(states[i].getPatterns());
+            }
+        }
+
+        State[] classTargets = new State[classCount];
+        boolean[] connected = new boolean[partition.getBlockCount()];
+        for (int i = 0; i < states.length; i++) {
+            int block = partition.getBlock(i);
+            if (block != deadBlock && !connected[block]) {
+                connected[block] = true;
+                for (int c = 0; c < classCount; c++) {
+                    int targetBlock = partition.getBlock(delta[i * classCount + c]);
+                    classTargets[c] = targetBlock == deadBlock ? null : minimalStates[targetBlock];
+                }
+                connectIntervals(minimalStates[block], alphabet, classTargets);
+            }
+        }
+
+        State initialState = minimalStates[partition.getBlock(pDAutomaton.getInitialState().getId())];
+        initialState.setInitial(true);
+        return new Automaton(initialState);
+    }
+
+    private TransitionTable generateTable(Automaton pDAutomaton) {
+
+        State[] states = pDAutomaton.getStateList().toArray(new State[0]);
+
+        // límites de los intervalos de caracteres que distinguen las
+        // transiciones
+        boolean[] boundaries = new boolean[Character.MAX_VALUE + 2];
+        boundaries[0] = true;
+        boundaries[Character.MAX_VALUE + 1] = true;
+        for (State state : states) {
+            for (Transition t : state.getTransitions()) {
+                CharClassMap.addBoundaries(t, boundaries);
+            }
+        }
+
+        // cada intervalo se agrupa con los que tienen las mismas transiciones
+        // (misma columna de la tabla)
+        char[] classOfChar = new char[Character.MAX_VALUE + 1];
+        Map<TableColumn, Integer> columns = new HashMap<TableColumn, Integer>();
+        List<int[]> classColumns = new ArrayList<int[]>();
+
+        int intervalStart = 0;
+        while (intervalStart <= Character.MAX_VALUE) {
+            int intervalEnd = intervalStart + 1;
+            while (!boundaries[intervalEnd]) {
+                intervalEnd++;
+            }
+
+            int[] column = new int[states.length];
+            for (int i = 0; i < states.length; i++) {
+                Transition t = findTransition(states[i], (char) intervalStart);
+                column[i] = t == null ? TransitionTable.NO_STATE : t.getNextState().getId();
+            }
+
+            TableColumn key = new TableColumn(column);
+            Integer charClass = columns.get(key);
+            if (charClass == null) {
+                charClass = classColumns.size();
+                columns.put(key, charClass);
+                classColumns.add(column);
+            }
+            Arrays.fill(classOfChar, intervalStart, intervalEnd, (char) charClass.intValue());
+            intervalStart = intervalEnd;
+        }
+
+        int classCount = classColumns.size();
+        int[] table = new int[states.length * classCount];
+        boolean[] accepting = new boolean[states.length];
+        int[][] patterns = new int[states.length][];
+        boolean hasPatterns = false;
+        for (int i = 0; i < states.length; i++) {
+            for (int c = 0; c < classCount; c++) {
+                table[i * classCount + c] = classColumns.get(c)[i];
+            }
+            accepting[i] = states[i].isEnd();
+            patterns[i] = states[i].getPatterns();
+            hasPatterns |= patterns[i] != null;
+        }
+
+        return new TransitionTable(new CharClassMap(classOfChar, classCount), table, accepting,
+                hasPatterns ? patterns : null, pDAutomaton.getInitialState().getId());
+    }
+
+    /*
+     * Primera transición del estado que se cumple para el carácter.
+     */
+    private Transition findTransition(State state, char c) {
+
+        for (Transition t : state.getTransitions()) {
+            if (t.match(c)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Columna de la tabla de transiciones usada como clave.
+     */
+    private static final class TableColumn {
+
+        private final int[] nextStates;
+
+        TableColumn(int[] pNextStates) {
+            nextStates = pNextStates;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nextStates);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TableColumn && Arrays.equals(nextStates, ((TableColumn) obj).nextStates);
+        }
+    }
+
     // comienzo métodos de construccion del semántica del AF
 
     /**
@@ -456,130 +1065,28 @@ public final class AutomatonBuilder {
     // ///////////////////
     // métodos para el algoritmo subconjunto
 
-    private SubSetState epsilonClosure(State state) {
-
-        Set<State> closureSet = new HashSet<State>();
-        epsilonClosure(state, closureSet, createEmptyTransition());
-
-        SubSetState subSetState = new SubSetState(closureSet);
-        subSetState.getState().setEnd(verifyFinalStates(subSetState));
+    private SubSetState createSubSetState(NFATable nfa, BitSet states) {
 
+        SubSetState subSetState = new SubSetState(states);
+        // el estado agrupado es final si alguno de sus estados lo es
+        subSetState.getState().setEnd(nfa.isAccepting(states));
+        subSetState.getState().setPatterns(nfa.getPatterns(states));
         return subSetState;
-
     }
 
-    private void epsilonClosure(State state, Set<State> closureSet, Transition sourceTransition) {
-
-        if (state.getTransitions() != null) {
-            for (Transition t : state.getTransitions()) {
-                if (sourceTransition.equals(t)) {
-                    epsilonClosure(t.getNextState(), closureSet, sourceTransition);
-                }
-            }
-        }
-
-        closureSet.add(state);
+    private State createSearchState(SearchSubset subset) {
 
+        State state = new State();
+        state.setEnd(subset.isAccepting());
+        return state;
     }
 
-    private SubSetState selectState(List<SubSetState> DFAstates) {
-
-        for (SubSetState subSetState : DFAstates) {
-
-            if (!subSetState.isMark()) {
-                return subSetState;
-            }
+    private Transition copyTransition(Transition t) {
+        try {
+            return (Transition) t.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
         }
-        return null;
-    }
-
-    /**
-     * Movimiento de S. Sienod S un estado agrupado.
-     * 
-     * Retorna el subconjunto de estados a los que llevan los estados de
-     * pSubSetState con la transición indicada.
-     * 
-     * @param fa
-     *            autómata
-     * @param pSubSetState
-     *            Estados a verificar.
-     * @param t
-     *            Transitión.
-     * @return Estado {@link SubSetState} que agrupa ese conjunto de estados.
-     */
-    private SubSetState epsilonMove(Automaton fa, SubSetState pSubSetState, Transition t) {
-
-        Set<State> moveStates = new HashSet<State>();
-        for (State state : pSubSetState.getStates()) {
-
-            searchStatesByTransition(state, t, moveStates);
-        }
-
-        SubSetState subSetState = new SubSetState(moveStates);
-
-        return subSetState;
-
-    }
-
-    /*
-     * Obtener todos los estados a los que se puede llegar desde state con
-     * transision testTransition
-     */
-    private void searchStatesByTransition(State state, Transition testTransition, Set<State> pEpsilonMoveStates) {
-
-        if (state == null) {
-            return;
-        }
-
-        if (state.getTransitions() != null) {
-            for (Transition t : state.getTransitions()) {
-                if (t.equals(testTransition)) {
-                    pEpsilonMoveStates.add(t.getNextState());
-                } else if (t instanceof TransitionEmpty) {
-                    searchStatesByTransition(t.getNextState(), testTransition, pEpsilonMoveStates);
-                }
-
-            }
-        }
-    }
-
-    /*
-     * Cierre epsilon de un estado agrupado.
-     */
-    private SubSetState epsilonClosure(SubSetState subSetState) {
-
-        Set<State> states = new HashSet<State>();
-
-        for (State state : subSetState.getStates()) {
-            states.addAll(epsilonClosure(state).getStates());
-        }
-
-        SubSetState closureSubSet = new SubSetState(states);
-
-        // comprueba si alguno de los estados es final para marcar
-        // el estado superconjunto como final.
-
-        closureSubSet.getState().setEnd(verifyFinalStates(closureSubSet));
-
-        return closureSubSet;
-    }
-
-    private boolean verifyFinalStates(SubSetState subSetState) {
-        for (State state : subSetState.getStates()) {
-            if (state.isEnd()) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private SubSetState findState(List<SubSetState> DFAstates, SubSetState closureState) {
-        for (SubSetState subSetState : DFAstates) {
-            if (subSetState.equals(closureState)) {
-                return subSetState;
-            }
-        }
-        return null;
     }
 
     private Transition createEmptyTransition() {
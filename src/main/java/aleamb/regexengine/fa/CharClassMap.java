@@ -0,0 +1,280 @@
+package aleamb.regexengine.fa;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps every UTF-16 character to a character class.
+ *
+ * Two characters belong to the same class when every transition of the
+ * automaton treats them in the same way, so the automaton can be executed
+ * over class identifiers instead of characters.
+ *
+ * Map is stored in two levels: high byte of the character selects a block of
+ * 256 entries and low byte selects the class inside the block. Identical
+ * blocks are shared, so a map usually takes a few kilobytes instead of the
+ * 128 KB of a flat table.
+ */
+public final class CharClassMap {
+
+    // number of characters covered by each block
+    private static final int BLOCK_SIZE = 256;
+
+    // header of an array object in a 64 bits JVM
+    static final int ARRAY_HEADER_BYTES = 16;
+
+    // offset of the block for each high byte.
+    private final int[] blockOffsets;
+
+    // shared blocks, one after another.
+    private final char[] classes;
+
+    // lowest character of each class.
+    private final char[] representatives;
+
+    // first character of each run of characters with the same class.
+    private final char[] intervalStarts;
+
+    private final int classCount;
+
+    /**
+     * Builds map from a flat table.
+     *
+     * @param classOfChar
+     *            class for each of the 65536 characters.
+     * @param pClassCount
+     *            number of distinct classes in table.
+     */
+    CharClassMap(char[] classOfChar, int pClassCount) {
+
+        classCount = pClassCount;
+        blockOffsets = new int[BLOCK_SIZE];
+
+        Map<String, Integer> sharedBlocks = new HashMap<String, Integer>();
+        char[] blocks = new char[classOfChar.length];
+        int blocksLength = 0;
+
+        for (int block = 0; block < BLOCK_SIZE; block++) {
+            String key = new String(classOfChar, block * BLOCK_SIZE, BLOCK_SIZE);
+            Integer offset = sharedBlocks.get(key);
+            if (offset == null) {
+                offset = blocksLength;
+                System.arraycopy(classOfChar, block * BLOCK_SIZE, blocks, blocksLength, BLOCK_SIZE);
+                blocksLength += BLOCK_SIZE;
+                sharedBlocks.put(key, offset);
+            }
+            blockOffsets[block] = offset;
+        }
+        classes = Arrays.copyOf(blocks, blocksLength);
+
+        representatives = new char[classCount];
+        Arrays.fill(representatives, Character.MAX_VALUE);
+        for (int c = classOfChar.length - 1; c >= 0; c--) {
+            representatives[classOfChar[c]] = (char) c;
+        }
+
+        StringBuilder starts = new StringBuilder().append((char) 0);
+        for (int c = 1; c < classOfChar.length; c++) {
+            if (classOfChar[c] != classOfChar[c - 1]) {
+                starts.append((char) c);
+            }
+        }
+        intervalStarts = starts.toString().toCharArray();
+    }
+
+    private CharClassMap(int[] pBlockOffsets, char[] pClasses, char[] pRepresentatives, char[] pIntervalStarts) {
+        blockOffsets = pBlockOffsets;
+        classes = pClasses;
+        representatives = pRepresentatives;
+        intervalStarts = pIntervalStarts;
+        classCount = pRepresentatives.length;
+    }
+
+    /**
+     * Partitions the characters accepted by a set of transitions into disjoint
+     * classes. Two characters share a class when they are accepted by exactly
+     * the same transitions. Characters not accepted by any transition share
+     * one class too. Empty transitions are ignored.
+     *
+     * @param transitions
+     *            alphabet of an automaton.
+     * @return class map with the minimal number of classes.
+     */
+    public static CharClassMap fromTransitions(Iterable<Transition> transitions) {
+
+        List<Transition> symbols = new ArrayList<Transition>();
+        boolean[] boundaries = new boolean[Character.MAX_VALUE + 2];
+        boundaries[0] = true;
+        boundaries[Character.MAX_VALUE + 1] = true;
+        for (Transition t : transitions) {
+            if (!(t instanceof TransitionEmpty)) {
+                symbols.add(t);
+                addBoundaries(t, boundaries);
+            }
+        }
+
+        char[] classOfChar = new char[Character.MAX_VALUE + 1];
+        Map<BitSet, Integer> signatures = new HashMap<BitSet, Integer>();
+
+        int intervalStart = 0;
+        while (intervalStart <= Character.MAX_VALUE) {
+            int intervalEnd = intervalStart + 1;
+            while (!boundaries[intervalEnd]) {
+                intervalEnd++;
+            }
+
+            // transitions that accept the interval
+            BitSet signature = new BitSet(symbols.size());
+            for (int i = 0; i < symbols.size(); i++) {
+                if (symbols.get(i).match((char) intervalStart)) {
+                    signature.set(i);
+                }
+            }
+            Integer charClass = signatures.get(signature);
+            if (charClass == null) {
+                charClass = signatures.size();
+                signatures.put(signature, charClass);
+            }
+            Arrays.fill(classOfChar, intervalStart, intervalEnd, (char) charClass.intValue());
+            intervalStart = intervalEnd;
+        }
+
+        return new CharClassMap(classOfChar, signatures.size());
+    }
+
+    /**
+     * Class of a character.
+     *
+     * @param c
+     *            character.
+     * @return class identifier, between 0 and {@link #getClassCount()} - 1.
+     */
+    public int classOf(char c) {
+        return classes[blockOffsets[c >>> 8] + (c & 0xFF)];
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Approximate heap size of the map, counting its arrays.
+     *
+     * @return size in bytes.
+     */
+    public long getEstimatedBytes() {
+        return 4L * ARRAY_HEADER_BYTES + 4L * blockOffsets.length
+                + 2L * (classes.length + representatives.length + intervalStarts.length);
+    }
+
+    /**
+     * Number of runs of consecutive characters with the same class.
+     *
+     * @return number of intervals, at least 1.
+     */
+    public int getIntervalCount() {
+        return intervalStarts.length;
+    }
+
+    public char getIntervalStart(int interval) {
+        return intervalStarts[interval];
+    }
+
+    public char getIntervalEnd(int interval) {
+        return interval + 1 < intervalStarts.length ? (char) (intervalStarts[interval + 1] - 1) : Character.MAX_VALUE;
+    }
+
+    public int getIntervalClass(int interval) {
+        return classOf(intervalStarts[interval]);
+    }
+
+    /**
+     * Lowest character of a class. Any character of the class gives the same
+     * result when applied to a transition.
+     *
+     * @param pClass
+     *            class identifier.
+     * @return representative character.
+     */
+    public char getRepresentative(int pClass) {
+        return representatives[pClass];
+    }
+
+    /**
+     * Writes the map in the format read by {@link #read(ByteBuffer)}.
+     */
+    void write(DataOutput out) throws IOException {
+
+        out.writeInt(classCount);
+        out.writeInt(classes.length);
+        out.writeInt(intervalStarts.length);
+        TableFormat.writeInts(out, blockOffsets);
+        TableFormat.writeChars(out, classes);
+        TableFormat.writeChars(out, representatives);
+        TableFormat.writeChars(out, intervalStarts);
+    }
+
+    /**
+     * Reads a map written by {@link #write(DataOutput)}, from the position of
+     * a buffer, and moves the position after it.
+     *
+     * @throws IllegalArgumentException
+     *             if data is not a valid map.
+     */
+    static CharClassMap read(ByteBuffer buffer) {
+
+        int count = buffer.getInt();
+        int classesLength = buffer.getInt();
+        int intervalCount = buffer.getInt();
+        TableFormat.check(count > 0 && classesLength >= BLOCK_SIZE && classesLength % BLOCK_SIZE == 0
+                && intervalCount > 0, "class map header");
+        TableFormat.check((long) classesLength + count + intervalCount <= buffer.remaining() / 2, "class map size");
+
+        int[] blockOffsets = TableFormat.readInts(buffer, BLOCK_SIZE);
+        for (int offset : blockOffsets) {
+            TableFormat.check(offset >= 0 && offset <= classesLength - BLOCK_SIZE, "block offset");
+        }
+        char[] classes = TableFormat.readChars(buffer, classesLength);
+        for (char c : classes) {
+            TableFormat.check(c < count, "character class");
+        }
+        return new CharClassMap(blockOffsets, classes, TableFormat.readChars(buffer, count), TableFormat.readChars(
+                buffer, intervalCount));
+    }
+
+    /**
+     * Marks in <code>boundaries</code> the characters where the result of the
+     * transition may change. A character class never contains a boundary
+     * except at its first character.
+     *
+     * @param t
+     *            transition.
+     * @param boundaries
+     *            array of 65537 flags.
+     */
+    static void addBoundaries(Transition t, boolean[] boundaries) {
+
+        if (t instanceof TransitionRange) {
+            TransitionRange range = (TransitionRange) t;
+            boundaries[range.getInitChar()] = true;
+            boundaries[range.getEndChar() + 1] = true;
+        } else if (t instanceof TransitionExcludeRange) {
+            TransitionExcludeRange range = (TransitionExcludeRange) t;
+            boundaries[range.getInitChar()] = true;
+            boundaries[range.getEndChar() + 1] = true;
+        } else if (t instanceof TransitionExclude) {
+            for (char c : ((TransitionExclude) t).getExcluded()) {
+                boundaries[c] = true;
+                boundaries[c + 1] = true;
+            }
+        }
+    }
+
+}
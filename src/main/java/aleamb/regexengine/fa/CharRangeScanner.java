@@ -0,0 +1,22 @@
+package aleamb.regexengine.fa;
+
+/**
+ * Finds the first character of a buffer inside a few character ranges.
+ *
+ * Implemented by a vectorized kernel compiled for Java 17 and later, which
+ * tests many characters per instruction. See {@link Prefilter}.
+ */
+interface CharRangeScanner {
+
+    /**
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @param end
+     *            position after the last character searched.
+     * @return first position of a character inside any range, or -1.
+     */
+    int find(char[] buffer, int from, int end);
+
+}
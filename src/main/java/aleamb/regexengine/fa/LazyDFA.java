@@ -0,0 +1,70 @@
+package aleamb.regexengine.fa;
+
+/**
+ * Deterministic finite automaton built on demand from a nondeterministic one.
+ *
+ * This object only holds the nondeterministic automaton and its reverse,
+ * indexed for subset operations, and it is immutable, so it can be shared
+ * between threads. States of the deterministic automata live in
+ * {@link LazyTransitionTable} caches created by {@link #newSearchTable(int)}
+ * and {@link #newReverseTable(int)}, one per thread.
+ */
+public final class LazyDFA {
+
+    private final NFATable nfa;
+
+    private final NFATable reverseNfa;
+
+    LazyDFA(NFATable pNfa, NFATable pReverseNfa) {
+        nfa = pNfa;
+        reverseNfa = pReverseNfa;
+    }
+
+    /**
+     * Creates an empty cache of states of the automaton, anchored at the
+     * start position.
+     *
+     * @param maxStates
+     *            maximum number of states kept by the cache.
+     * @return new table.
+     */
+    public LazyTransitionTable newTable(int maxStates) {
+        return new LazyTransitionTable(nfa, false, maxStates);
+    }
+
+    /**
+     * Creates an empty cache of states for unanchored search, as the table of
+     * {@link AutomatonBuilder#generateSearchDFA(Automaton)}.
+     *
+     * @param maxStates
+     *            maximum number of states kept by the cache.
+     * @return new table.
+     */
+    public LazyTransitionTable newSearchTable(int maxStates) {
+        return new LazyTransitionTable(nfa, true, maxStates);
+    }
+
+    /**
+     * Creates an empty cache of states of the reverse automaton, anchored at
+     * the end of a match.
+     *
+     * @param maxStates
+     *            maximum number of states kept by the cache.
+     * @return new table.
+     */
+    public LazyTransitionTable newReverseTable(int maxStates) {
+        if (reverseNfa == null) {
+            throw new IllegalStateException("No reverse automaton");
+        }
+        return new LazyTransitionTable(reverseNfa, false, maxStates);
+    }
+
+    public int getNFAStateCount() {
+        return nfa.getStateCount() + (reverseNfa == null ? 0 : reverseNfa.getStateCount());
+    }
+
+    public int getClassCount() {
+        return nfa.getAlphabet().getClassCount();
+    }
+
+}
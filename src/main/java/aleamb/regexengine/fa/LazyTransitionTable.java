@@ -0,0 +1,174 @@
+package aleamb.regexengine.fa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transition table whose states are built while the input is scanned.
+ *
+ * Every state is a {@link SearchSubset} of the nondeterministic automaton, as
+ * in {@link AutomatonBuilder#generateSearchDFA(Automaton)}, but a subset is
+ * only created the first time the input reaches it. Table entries are {@link #UNKNOWN} until they are
+ * computed with {@link #computeNext(int, int, int)}, so only the part of the
+ * deterministic automaton used by the input is ever built.
+ *
+ * Number of states is bounded. When the table is full it is flushed: every
+ * state is discarded except the initial state, which keeps number 0, and the
+ * current state. If flushes happen so often that the table does not save
+ * work, the table stops caching and simulates the nondeterministic automaton
+ * directly, computing every step from the previous subset.
+ *
+ * Instances are mutable and must not be shared between threads.
+ */
+public class LazyTransitionTable extends TransitionTable {
+
+    // consecutive flushes with low progress before falling back to simulation
+    private static final int MAX_BAD_FLUSHES = 3;
+
+    // characters per cached state below which a flush has low progress
+    private static final int MIN_CHARS_PER_STATE = 10;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final NFATable nfa;
+
+    private final int maxStates;
+
+    private final int classCount;
+
+    // subset of each state and index of states by subset
+    private final boolean unanchored;
+
+    private SearchSubset[] subsets;
+    private final Map<SearchSubset, Integer> stateIds = new HashMap<SearchSubset, Integer>();
+
+    private int stateCount;
+
+    private int flushCount;
+    private int badFlushCount;
+    private int lastFlushPosition;
+
+    private boolean simulating;
+
+    LazyTransitionTable(NFATable pNfa, boolean pUnanchored, int pMaxStates) {
+
+        super(pNfa.getAlphabet(), new int[0], new boolean[0], 0);
+
+        if (pMaxStates < 3) {
+            throw new IllegalArgumentException("Lazy table needs at least 3 states");
+        }
+        nfa = pNfa;
+        unanchored = pUnanchored;
+        maxStates = pMaxStates;
+        classCount = pNfa.getAlphabet().getClassCount();
+
+        int capacity = Math.min(INITIAL_CAPACITY, maxStates);
+        subsets = new SearchSubset[capacity];
+        table = new int[capacity * classCount];
+        accepting = new boolean[capacity];
+        if (nfa.hasPatterns()) {
+            patterns = new int[capacity][];
+        }
+
+        addState(nfa.getSearchStart(unanchored));
+    }
+
+    @Override
+    public int computeNext(int state, int charClass, int position) {
+
+        SearchSubset current = subsets[state];
+        SearchSubset target = nfa.searchMove(current, charClass);
+
+        if (target.isEmpty()) {
+            if (!simulating) {
+                table[state * classCount + charClass] = NO_STATE;
+            }
+            return NO_STATE;
+        }
+
+        Integer targetId = stateIds.get(target);
+        if (targetId == null) {
+            if (simulating || stateCount == maxStates) {
+                state = flush(current, position);
+            }
+            targetId = addState(target);
+        }
+        if (!simulating) {
+            table[state * classCount + charClass] = targetId;
+        }
+        return targetId;
+    }
+
+    @Override
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return number of times the table has been flushed.
+     */
+    public int getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * @return true if table has fallen back to simulation of the
+     *         nondeterministic automaton.
+     */
+    public boolean isSimulating() {
+        return simulating;
+    }
+
+    /*
+     * Discards all states except the initial one and the current one.
+     * Returns the new number of the current state.
+     */
+    private int flush(SearchSubset current, int position) {
+
+        Arrays.fill(table, 0, stateCount * classCount, UNKNOWN);
+        stateIds.clear();
+        stateCount = 0;
+
+        addState(nfa.getSearchStart(unanchored));
+        int currentId = current.equals(subsets[0]) ? 0 : addState(current);
+
+        flushCount++;
+        if (!simulating && position >= lastFlushPosition) {
+            if (position - lastFlushPosition < maxStates * MIN_CHARS_PER_STATE) {
+                badFlushCount++;
+                simulating = badFlushCount >= MAX_BAD_FLUSHES;
+            } else {
+                badFlushCount = 0;
+            }
+        }
+        lastFlushPosition = position;
+
+        return currentId;
+    }
+
+    private int addState(SearchSubset subset) {
+
+        if (stateCount == subsets.length) {
+            int capacity = Math.min(subsets.length * 2, maxStates);
+            subsets = Arrays.copyOf(subsets, capacity);
+            accepting = Arrays.copyOf(accepting, capacity);
+            if (patterns != null) {
+                patterns = Arrays.copyOf(patterns, capacity);
+            }
+            table = Arrays.copyOf(table, capacity * classCount);
+        }
+
+        int id = stateCount++;
+        subsets[id] = subset;
+        accepting[id] = subset.isAccepting();
+        if (patterns != null) {
+            patterns[id] = nfa.getPatterns(subset);
+        }
+        stateIds.put(subset, id);
+        Arrays.fill(table, id * classCount, (id + 1) * classCount, UNKNOWN);
+
+        return id;
+    }
+
+}
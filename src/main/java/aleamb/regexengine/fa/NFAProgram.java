@@ -0,0 +1,77 @@
+package aleamb.regexengine.fa;
+
+/**
+ * Nondeterministic finite automaton flattened into arrays for direct
+ * simulation.
+ *
+ * Building a program is linear in the size of the automaton: no epsilon
+ * closure, character class or subset is computed in advance. That work is
+ * done for every input character by {@link NFASimulator}, which makes sense
+ * for patterns applied once or to short inputs.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class NFAProgram {
+
+    // empty transitions of each state
+    final int[][] emptyTargets;
+
+    // non empty transitions of each state and their targets
+    final Transition[][] transitions;
+    final int[][] targets;
+
+    final boolean[] accepting;
+
+    final int initialState;
+
+    NFAProgram(Automaton nfa) {
+
+        int stateCount = nfa.getStateList().size();
+        emptyTargets = new int[stateCount][];
+        transitions = new Transition[stateCount][];
+        targets = new int[stateCount][];
+        accepting = new boolean[stateCount];
+        initialState = nfa.getInitialState().getId();
+
+        for (State state : nfa.getStateList()) {
+            int id = state.getId();
+            int emptyCount = 0;
+            int symbolCount = 0;
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty) {
+                    emptyCount++;
+                } else {
+                    symbolCount++;
+                }
+            }
+            emptyTargets[id] = new int[emptyCount];
+            transitions[id] = new Transition[symbolCount];
+            targets[id] = new int[symbolCount];
+            emptyCount = 0;
+            symbolCount = 0;
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty) {
+                    emptyTargets[id][emptyCount++] = t.getNextState().getId();
+                } else {
+                    transitions[id][symbolCount] = t;
+                    targets[id][symbolCount++] = t.getNextState().getId();
+                }
+            }
+            accepting[id] = state.isEnd();
+        }
+    }
+
+    /**
+     * Creates a simulator. Simulators are mutable, so each thread needs its own.
+     *
+     * @return new simulator positioned at the initial state.
+     */
+    public NFASimulator newSimulator() {
+        return new NFASimulator(this);
+    }
+
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+}
@@ -0,0 +1,255 @@
+package aleamb.regexengine.fa;
+
+/**
+ * Pike VM: Thompson simulation of a {@link NFAProgram} that tracks where each
+ * thread started.
+ *
+ * The simulator keeps the active states in a {@link SparseSet}, ordered by
+ * the position where their match started. For every character it builds the
+ * next set in a second sparse set, following empty transitions with an
+ * explicit stack, and swaps both sets. A state reached by two threads keeps
+ * the earliest start, because the later one can not give a more leftmost
+ * match. Each step costs time proportional to the number of states of the
+ * automaton and nothing is allocated after construction.
+ *
+ * {@link #search(char[], int)} finds the leftmost-longest match in a single
+ * forward pass: a new thread starts at every position until the first match
+ * is found, and threads that started after the best match are discarded.
+ * {@link #find(char[], int, int)} only tells if there is a match and stops as
+ * soon as any thread accepts.
+ *
+ * Instances are mutable and must not be shared between threads.
+ */
+public final class NFASimulator {
+
+    private final NFAProgram program;
+
+    private SparseSet current;
+    private SparseSet next;
+
+    // start position of the thread in each state, indexed by state
+    private int[] currentStarts;
+    private int[] nextStarts;
+
+    // pending states of closure
+    private final int[] stack;
+
+    private int matchStart;
+    private int matchEnd;
+
+    NFASimulator(NFAProgram pProgram) {
+        program = pProgram;
+        int stateCount = program.getStateCount();
+        current = new SparseSet(stateCount);
+        next = new SparseSet(stateCount);
+        currentStarts = new int[stateCount];
+        nextStarts = new int[stateCount];
+        // every state is pushed at most once per step
+        stack = new int[stateCount];
+    }
+
+    /**
+     * Searches leftmost-longest match.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @return true if a match is found. Its bounds are returned by
+     *         {@link #getMatchStart()} and {@link #getMatchEnd()}.
+     */
+    public boolean search(char[] buffer, int from) {
+        return search(buffer, from, buffer.length);
+    }
+
+    /**
+     * Searches leftmost-longest match before an end position.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @param end
+     *            position after the last character searched.
+     * @return true if a match is found.
+     */
+    public boolean search(char[] buffer, int from, int end) {
+        return run(buffer, from, end, false);
+    }
+
+    /**
+     * Tells if there is a match before an end position, stopping at the first
+     * position where a match ends. Bounds returned by {@link #getMatchStart()}
+     * and {@link #getMatchEnd()} are the ones of that match, which may not be
+     * the leftmost-longest one.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @param end
+     *            position after the last character searched.
+     * @return true if a match is found.
+     */
+    public boolean find(char[] buffer, int from, int end) {
+        return run(buffer, from, end, true);
+    }
+
+    /**
+     * Searches leftmost-longest match in a character sequence.
+     *
+     * @param input
+     *            input sequence.
+     * @param from
+     *            position where search starts.
+     * @return true if a match is found.
+     */
+    public boolean search(CharSequence input, int from) {
+        return run(input, from, false);
+    }
+
+    /**
+     * Tells if there is a match in a character sequence, as
+     * {@link #find(char[], int, int)}.
+     *
+     * @param input
+     *            input sequence.
+     * @param from
+     *            position where search starts.
+     * @return true if a match is found.
+     */
+    public boolean find(CharSequence input, int from) {
+        return run(input, from, true);
+    }
+
+    private boolean run(char[] buffer, int from, int end, boolean earliest) {
+
+        start();
+        int position = from;
+        while (!accept(position, position == end, earliest)) {
+            step(buffer[position]);
+            position++;
+        }
+        return matchStart != -1;
+    }
+
+    private boolean run(CharSequence input, int from, boolean earliest) {
+
+        start();
+        final int end = input.length();
+        int position = from;
+        while (!accept(position, position == end, earliest)) {
+            step(input.charAt(position));
+            position++;
+        }
+        return matchStart != -1;
+    }
+
+    private void start() {
+        matchStart = -1;
+        matchEnd = -1;
+        current.clear();
+    }
+
+    /*
+     * Starts a new thread at a position if no match is found yet, and records
+     * the leftmost accepting thread. Returns true when search is finished,
+     * which for an earliest search is as soon as a match is found.
+     */
+    private boolean accept(int position, boolean atEnd, boolean earliest) {
+
+        boolean[] accepting = program.accepting;
+
+        // new thread starting here, after every thread started before
+        if (matchStart == -1) {
+            addClosure(current, currentStarts, program.initialState, position);
+        }
+
+        // first accepting thread has the leftmost start
+        for (int i = 0; i < current.size(); i++) {
+            int state = current.get(i);
+            if (accepting[state]) {
+                int start = currentStarts[state];
+                matchStart = start;
+                matchEnd = position;
+                // threads started later can not give the leftmost match
+                int last = i + 1;
+                while (last < current.size() && currentStarts[current.get(last)] == start) {
+                    last++;
+                }
+                current.truncate(last);
+                break;
+            }
+        }
+
+        return atEnd || (matchStart != -1 && (earliest || current.isEmpty()));
+    }
+
+    /*
+     * Moves every thread through a character.
+     */
+    private void step(char c) {
+
+        Transition[][] transitions = program.transitions;
+        int[][] targets = program.targets;
+
+        next.clear();
+        for (int i = 0; i < current.size(); i++) {
+            int state = current.get(i);
+            Transition[] stateTransitions = transitions[state];
+            for (int j = 0; j < stateTransitions.length; j++) {
+                if (stateTransitions[j].match(c)) {
+                    addClosure(next, nextStarts, targets[state][j], currentStarts[state]);
+                }
+            }
+        }
+
+        SparseSet swap = current;
+        current = next;
+        next = swap;
+        int[] swapStarts = currentStarts;
+        currentStarts = nextStarts;
+        nextStarts = swapStarts;
+    }
+
+    /**
+     * @return start position of last match found.
+     */
+    public int getMatchStart() {
+        return matchStart;
+    }
+
+    /**
+     * @return position after the last character of last match found.
+     */
+    public int getMatchEnd() {
+        return matchEnd;
+    }
+
+    /*
+     * Adds a state and every state reachable from it through empty
+     * transitions, unless they are already in the set with an earlier start.
+     */
+    private void addClosure(SparseSet set, int[] starts, int state, int start) {
+
+        if (!set.add(state)) {
+            return;
+        }
+        starts[state] = start;
+
+        int[][] emptyTargets = program.emptyTargets;
+
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int s = stack[--top];
+            for (int target : emptyTargets[s]) {
+                if (set.add(target)) {
+                    starts[target] = start;
+                    stack[top++] = target;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package aleamb.regexengine.fa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Nondeterministic finite automaton indexed for subset operations.
+ *
+ * Epsilon closure of every state is computed once, following
+ * {@link TransitionEmpty} edges with a visited set so cycles of empty
+ * transitions are safe, and it is stored as a {@link BitSet} of state
+ * identifiers. Moving a set of states with a character class and closing the
+ * result are then unions of precomputed bitsets.
+ */
+class NFATable {
+
+    private final CharClassMap alphabet;
+
+    // epsilon closure of each state
+    private final BitSet[] closures;
+
+    // non empty transitions of each state and their targets
+    private final Transition[][] transitions;
+    private final int[][] targets;
+
+    // accepting states
+    private final BitSet endStates;
+
+    // patterns accepted by each state, null if automaton has no patterns
+    private final int[][] patterns;
+
+    private final int initialState;
+
+    NFATable(Automaton nfa, CharClassMap pAlphabet) {
+
+        alphabet = pAlphabet;
+        State[] states = nfa.getStateList().toArray(new State[0]);
+        int stateCount = states.length;
+
+        closures = new BitSet[stateCount];
+        transitions = new Transition[stateCount][];
+        targets = new int[stateCount][];
+        endStates = new BitSet(stateCount);
+        initialState = nfa.getInitialState().getId();
+        int[][] statePatterns = new int[stateCount][];
+        boolean hasPatterns = false;
+
+        int[] emptyTargets = new int[stateCount];
+        int[][] emptyEdges = new int[stateCount][];
+
+        for (State state : states) {
+            int id = state.getId();
+            int symbolCount = 0;
+            int emptyCount = 0;
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty) {
+                    emptyTargets[emptyCount++] = t.getNextState().getId();
+                } else {
+                    symbolCount++;
+                }
+            }
+            emptyEdges[id] = new int[emptyCount];
+            System.arraycopy(emptyTargets, 0, emptyEdges[id], 0, emptyCount);
+
+            transitions[id] = new Transition[symbolCount];
+            targets[id] = new int[symbolCount];
+            int i = 0;
+            for (Transition t : state.getTransitions()) {
+                if (!(t instanceof TransitionEmpty)) {
+                    transitions[id][i] = t;
+                    targets[id][i++] = t.getNextState().getId();
+                }
+            }
+            if (state.isEnd()) {
+                endStates.set(id);
+            }
+            statePatterns[id] = state.getPatterns();
+            hasPatterns |= statePatterns[id] != null;
+        }
+        patterns = hasPatterns ? statePatterns : null;
+
+        // cierre de cada estado mediante recorrido en profundidad iterativo
+        int[] stack = new int[stateCount];
+        for (int id = 0; id < stateCount; id++) {
+            BitSet closure = new BitSet(stateCount);
+            closure.set(id);
+            int top = 0;
+            stack[top++] = id;
+            while (top > 0) {
+                int current = stack[--top];
+                for (int next : emptyEdges[current]) {
+                    if (!closure.get(next)) {
+                        closure.set(next);
+                        stack[top++] = next;
+                    }
+                }
+            }
+            closures[id] = closure;
+        }
+    }
+
+    CharClassMap getAlphabet() {
+        return alphabet;
+    }
+
+    int getStateCount() {
+        return closures.length;
+    }
+
+    /**
+     * Epsilon closure of the initial state. Returned set must not be
+     * modified.
+     */
+    BitSet getInitialClosure() {
+        return closures[initialState];
+    }
+
+    /**
+     * Epsilon closure of a state. Returned set must not be modified.
+     */
+    BitSet getClosure(int state) {
+        return closures[state];
+    }
+
+    /**
+     * Epsilon closure of the states reached from a set of states with a
+     * character class.
+     *
+     * @param subset
+     *            closed set of states.
+     * @param charClass
+     *            class of {@link #getAlphabet()}.
+     * @return new set of states, empty if there is no transition.
+     */
+    BitSet move(BitSet subset, int charClass) {
+
+        char c = alphabet.getRepresentative(charClass);
+        BitSet result = new BitSet(closures.length);
+
+        for (int state = subset.nextSetBit(0); state >= 0; state = subset.nextSetBit(state + 1)) {
+            Transition[] stateTransitions = transitions[state];
+            for (int i = 0; i < stateTransitions.length; i++) {
+                if (stateTransitions[i].match(c)) {
+                    result.or(closures[targets[state][i]]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * First state of a search: one group with the initial closure.
+     *
+     * @param unanchored
+     *            true to add a new group at every position, false if match
+     *            must start at the first position.
+     */
+    SearchSubset getSearchStart(boolean unanchored) {
+
+        BitSet closure = closures[initialState];
+        boolean accepting = isAccepting(closure);
+        int[] states = new int[closure.cardinality() + 1];
+        int length = appendGroup(states, 0, closure);
+        return new SearchSubset(Arrays.copyOf(states, length), unanchored && !accepting, accepting);
+    }
+
+    /**
+     * Search state reached from another one with a character class. See
+     * {@link SearchSubset} for the rules followed by groups.
+     *
+     * @return new search state, empty if search can not match anymore.
+     */
+    SearchSubset searchMove(SearchSubset subset, int charClass) {
+
+        char c = alphabet.getRepresentative(charClass);
+        int[] states = subset.getStates();
+
+        // states already taken by a previous group
+        BitSet seen = new BitSet(closures.length);
+        BitSet group = new BitSet(closures.length);
+        int[] result = new int[closures.length * 2 + 2];
+        int length = 0;
+        boolean accepting = false;
+
+        int i = 0;
+        while (i < states.length && !accepting) {
+            group.clear();
+            for (; states[i] != SearchSubset.GROUP_END; i++) {
+                int state = states[i];
+                Transition[] stateTransitions = transitions[state];
+                for (int j = 0; j < stateTransitions.length; j++) {
+                    if (stateTransitions[j].match(c)) {
+                        group.or(closures[targets[state][j]]);
+                    }
+                }
+            }
+            i++;
+            group.andNot(seen);
+            if (!group.isEmpty()) {
+                seen.or(group);
+                length = appendGroup(result, length, group);
+                // later groups can not give the leftmost match
+                accepting = isAccepting(group);
+            }
+        }
+
+        boolean injecting = subset.isInjecting() && !accepting;
+        if (injecting) {
+            group.clear();
+            group.or(closures[initialState]);
+            group.andNot(seen);
+            if (!group.isEmpty()) {
+                length = appendGroup(result, length, group);
+                accepting = isAccepting(group);
+                injecting = !accepting;
+            }
+        }
+        return new SearchSubset(Arrays.copyOf(result, length), injecting, accepting);
+    }
+
+    boolean isAccepting(BitSet subset) {
+        return subset.intersects(endStates);
+    }
+
+    boolean isAccepting(int state) {
+        return endStates.get(state);
+    }
+
+    /**
+     * Patterns accepted by a set of states.
+     *
+     * @return sorted identifiers of patterns, or null if there is none.
+     */
+    int[] getPatterns(BitSet subset) {
+
+        if (patterns == null || !subset.intersects(endStates)) {
+            return null;
+        }
+        BitSet accepted = new BitSet();
+        for (int state = subset.nextSetBit(0); state >= 0; state = subset.nextSetBit(state + 1)) {
+            if (patterns[state] != null) {
+                for (int pattern : patterns[state]) {
+                    accepted.set(pattern);
+                }
+            }
+        }
+        return toArray(accepted);
+    }
+
+    /**
+     * Patterns accepted by a search state.
+     *
+     * @return sorted identifiers of patterns, or null if there is none.
+     */
+    int[] getPatterns(SearchSubset subset) {
+
+        if (patterns == null || !subset.isAccepting()) {
+            return null;
+        }
+        BitSet accepted = new BitSet();
+        for (int state : subset.getStates()) {
+            if (state != SearchSubset.GROUP_END && patterns[state] != null) {
+                for (int pattern : patterns[state]) {
+                    accepted.set(pattern);
+                }
+            }
+        }
+        return toArray(accepted);
+    }
+
+    boolean hasPatterns() {
+        return patterns != null;
+    }
+
+    private static int[] toArray(BitSet bits) {
+        if (bits.isEmpty()) {
+            return null;
+        }
+        int[] array = new int[bits.cardinality()];
+        int i = 0;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            array[i++] = bit;
+        }
+        return array;
+    }
+
+    private static int appendGroup(int[] buffer, int length, BitSet group) {
+        for (int state = group.nextSetBit(0); state >= 0; state = group.nextSetBit(state + 1)) {
+            buffer[length++] = state;
+        }
+        buffer[length++] = SearchSubset.GROUP_END;
+        return length;
+    }
+
+}
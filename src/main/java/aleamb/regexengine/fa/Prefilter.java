@@ -0,0 +1,576 @@
+package aleamb.regexengine.fa;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fast search of the positions where a match may start, used before running
+ * an automaton.
+ *
+ * A prefilter is extracted from the nondeterministic automaton by
+ * {@link #fromNFA(Automaton)}. If every match starts with the same literal
+ * prefix, candidates are found with Boyer-Moore-Horspool search of that
+ * prefix. Otherwise, if every match starts with one of a few characters,
+ * candidates are found by looking up each character in a table, or by
+ * testing it against a few ranges.
+ *
+ * On Java 17 and later, with module <code>jdk.incubator.vector</code> added
+ * (<code>--add-modules jdk.incubator.vector</code>), ranges are tested many
+ * characters at a time by a kernel on the Vector API, shipped in the
+ * versioned part of the jar. Otherwise, or if system property
+ * {@link #DISABLE_VECTOR_PROPERTY} is true, scalar loops are used.
+ * Both loops are much cheaper per character than stepping an automaton, and
+ * inputs without candidates are rejected without entering it.
+ *
+ * Prefilters are immutable and can be shared between threads.
+ */
+public abstract class Prefilter {
+
+    // longest prefix extracted
+    private static final int MAX_PREFIX_LENGTH = 64;
+
+    // sets with more first characters do not skip enough
+    private static final int MAX_FIRST_CHARS = 128;
+
+    // more ranges take more vector comparisons than a table lookup
+    private static final int MAX_VECTOR_RANGES = 4;
+
+    /**
+     * System property that disables the Vector API kernel when set to
+     * <code>true</code>.
+     */
+    public static final String DISABLE_VECTOR_PROPERTY = "aleamb.regexengine.disableVector";
+
+    // kinds of prefilter written by write
+    private static final int KIND_LITERAL = 0;
+    private static final int KIND_RANGES = 1;
+
+    // vector kernel, present in Java 17 and later when jdk.incubator.vector is added
+    private static final Constructor<?> VECTOR_SCANNER = loadVectorScanner();
+
+    /**
+     * Finds the first candidate position.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @return first position not lower than <code>from</code> where a match
+     *         may start, or -1 if no match is possible.
+     */
+    public int find(char[] buffer, int from) {
+        return find(buffer, from, buffer.length);
+    }
+
+    /**
+     * Finds the first candidate position before an end position.
+     *
+     * @param buffer
+     *            input buffer.
+     * @param from
+     *            position where search starts.
+     * @param end
+     *            position after the last character searched.
+     * @return first candidate position, or -1.
+     */
+    public abstract int find(char[] buffer, int from, int end);
+
+    /**
+     * Finds the first candidate position of a character sequence.
+     *
+     * @param input
+     *            input sequence.
+     * @param from
+     *            position where search starts.
+     * @return first candidate position, or -1.
+     */
+    public abstract int find(CharSequence input, int from);
+
+    /**
+     * Extracts a prefilter from a nondeterministic automaton.
+     *
+     * @param nfa
+     *            nondeterministic automaton.
+     * @return prefilter, or null if automaton may match the empty string or
+     *         its matches may start with too many characters.
+     */
+    public static Prefilter fromNFA(Automaton nfa) {
+
+        Set<State> current = closure(Collections.singleton(nfa.getInitialState()));
+        if (isAccepting(current)) {
+            return null;
+        }
+
+        // se sigue el autómata mientras solo haya un carácter posible
+        StringBuilder prefix = new StringBuilder();
+        while (prefix.length() < MAX_PREFIX_LENGTH && !isAccepting(current)) {
+            int c = singleChar(current);
+            if (c == -1) {
+                break;
+            }
+            prefix.append((char) c);
+            Set<State> targets = new HashSet<State>();
+            for (State state : current) {
+                for (Transition t : state.getTransitions()) {
+                    if (!(t instanceof TransitionEmpty)) {
+                        targets.add(t.getNextState());
+                    }
+                }
+            }
+            current = closure(targets);
+        }
+        if (prefix.length() > 0) {
+            return new LiteralPrefilter(prefix.toString().toCharArray());
+        }
+
+        // rangos de caracteres con los que puede empezar una coincidencia
+        List<TransitionRange> ranges = new ArrayList<TransitionRange>();
+        for (State state : closure(Collections.singleton(nfa.getInitialState()))) {
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty) {
+                    continue;
+                }
+                if (!(t instanceof TransitionRange)) {
+                    return null;
+                }
+                ranges.add((TransitionRange) t);
+            }
+        }
+        Collections.sort(ranges, new Comparator<TransitionRange>() {
+            public int compare(TransitionRange r1, TransitionRange r2) {
+                return r1.getInitChar() - r2.getInitChar();
+            }
+        });
+        StringBuilder lows = new StringBuilder();
+        StringBuilder highs = new StringBuilder();
+        int count = 0;
+        for (TransitionRange range : ranges) {
+            int last = highs.length() - 1;
+            if (last >= 0 && range.getInitChar() <= highs.charAt(last) + 1) {
+                if (range.getEndChar() > highs.charAt(last)) {
+                    count += range.getEndChar() - highs.charAt(last);
+                    highs.setCharAt(last, range.getEndChar());
+                }
+            } else {
+                lows.append(range.getInitChar());
+                highs.append(range.getEndChar());
+                count += range.getEndChar() - range.getInitChar() + 1;
+            }
+        }
+        if (count == 0 || count > MAX_FIRST_CHARS) {
+            return null;
+        }
+
+        return fromRanges(lows.toString().toCharArray(), highs.toString().toCharArray());
+    }
+
+    /*
+     * Prefilter of sorted, disjoint ranges of first characters, or null if
+     * there are too many ranges outside Latin-1.
+     */
+    private static Prefilter fromRanges(char[] rangeLows, char[] rangeHighs) {
+
+        if (rangeLows.length <= MAX_VECTOR_RANGES) {
+            CharRangeScanner scanner = newVectorScanner(rangeLows, rangeHighs);
+            if (scanner != null) {
+                return new RangePrefilter(rangeLows, rangeHighs, scanner);
+            }
+        }
+        if (rangeHighs[rangeHighs.length - 1] <= 0xFF) {
+            return new CharSetPrefilter(rangeLows, rangeHighs);
+        }
+        return rangeLows.length <= MAX_VECTOR_RANGES ? new RangePrefilter(rangeLows, rangeHighs, null) : null;
+    }
+
+    /**
+     * Writes this prefilter: its kind followed by the literal prefix, or by
+     * the lowest and highest characters of the ranges of first characters.
+     * Arrays are aligned to 4 bytes.
+     *
+     * @param out
+     *            output.
+     * @throws IOException
+     *             on write error.
+     */
+    public abstract void write(DataOutput out) throws IOException;
+
+    /**
+     * Reads a prefilter written by {@link #write(DataOutput)}, from the
+     * position of a buffer, and moves the position after it. Ranges are
+     * searched with the Vector API if it is available when reading.
+     *
+     * @param buffer
+     *            input buffer.
+     * @return prefilter.
+     * @throws IllegalArgumentException
+     *             if data is not a valid prefilter.
+     */
+    public static Prefilter read(ByteBuffer buffer) {
+
+        int kind = buffer.getInt();
+        int length = buffer.getInt();
+        check(length > 0 && length <= buffer.remaining() / 2, "length");
+        if (kind == KIND_LITERAL) {
+            check(length <= MAX_PREFIX_LENGTH, "literal length");
+            return new LiteralPrefilter(TableFormat.readChars(buffer, length));
+        }
+        check(kind == KIND_RANGES && length <= MAX_FIRST_CHARS, "kind");
+        char[] rangeLows = TableFormat.readChars(buffer, length);
+        char[] rangeHighs = TableFormat.readChars(buffer, length);
+        for (int r = 0; r < length; r++) {
+            check(rangeLows[r] <= rangeHighs[r] && (r == 0 || rangeLows[r] > rangeHighs[r - 1] + 1), "range");
+        }
+        Prefilter prefilter = fromRanges(rangeLows, rangeHighs);
+        check(prefilter != null, "ranges");
+        return prefilter;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Corrupt prefilter: " + message);
+        }
+    }
+
+    /**
+     * @return true if first characters are searched with the Vector API.
+     */
+    public static boolean isVectorized() {
+        return VECTOR_SCANNER != null;
+    }
+
+    private static Constructor<?> loadVectorScanner() {
+
+        if (Boolean.getBoolean(DISABLE_VECTOR_PROPERTY)) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = Class.forName(Prefilter.class.getPackage().getName() + ".VectorRangeScanner")
+                    .getDeclaredConstructor(char[].class, char[].class);
+            constructor.setAccessible(true);
+            // falla aquí si el módulo no está disponible
+            constructor.newInstance(new char[] { 'a' }, new char[] { 'z' });
+            return constructor;
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static CharRangeScanner newVectorScanner(char[] lows, char[] highs) {
+
+        if (VECTOR_SCANNER == null) {
+            return null;
+        }
+        try {
+            return (CharRangeScanner) VECTOR_SCANNER.newInstance(lows, highs);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Number of characters a candidate needs after its position. A search
+     * split in windows must overlap them by this length minus one.
+     *
+     * @return length of the literal prefix, or 1.
+     */
+    public int getLength() {
+        return 1;
+    }
+
+    /**
+     * Creates the prefilter of a literal.
+     *
+     * @param literal
+     *            non empty literal.
+     * @return prefilter that finds the occurrences of the literal.
+     */
+    public static Prefilter forLiteral(String literal) {
+        return new LiteralPrefilter(literal.toCharArray());
+    }
+
+    private static Set<State> closure(Set<State> states) {
+
+        Set<State> closure = new HashSet<State>(states);
+        List<State> pending = new ArrayList<State>(states);
+        while (!pending.isEmpty()) {
+            State state = pending.remove(pending.size() - 1);
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty && closure.add(t.getNextState())) {
+                    pending.add(t.getNextState());
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static boolean isAccepting(Set<State> states) {
+        for (State state : states) {
+            if (state.isEnd()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the only character accepted by the transitions of a set of
+     * states, or -1.
+     */
+    private static int singleChar(Set<State> states) {
+
+        int c = -1;
+        for (State state : states) {
+            for (Transition t : state.getTransitions()) {
+                if (t instanceof TransitionEmpty) {
+                    continue;
+                }
+                if (!(t instanceof TransitionRange)) {
+                    return -1;
+                }
+                TransitionRange range = (TransitionRange) t;
+                if (range.getInitChar() != range.getEndChar() || (c != -1 && c != range.getInitChar())) {
+                    return -1;
+                }
+                c = range.getInitChar();
+            }
+        }
+        return c;
+    }
+
+    private static void writeRanges(DataOutput out, char[] lows, char[] highs) throws IOException {
+        out.writeInt(KIND_RANGES);
+        out.writeInt(lows.length);
+        TableFormat.writeChars(out, lows);
+        TableFormat.writeChars(out, highs);
+    }
+
+    /**
+     * Boyer-Moore-Horspool search of a literal prefix. Shift table is indexed
+     * by the low byte of characters; characters that share a byte share the
+     * smallest shift, which is always safe.
+     */
+    private static final class LiteralPrefilter extends Prefilter {
+
+        private final char[] literal;
+
+        private final int[] shift = new int[256];
+
+        LiteralPrefilter(char[] pLiteral) {
+            literal = pLiteral;
+            int last = literal.length - 1;
+            Arrays.fill(shift, literal.length);
+            for (int i = 0; i < last; i++) {
+                shift[literal[i] & 0xFF] = last - i;
+            }
+        }
+
+        @Override
+        public int getLength() {
+            return literal.length;
+        }
+
+        @Override
+        public int find(char[] buffer, int from, int end) {
+
+            final char[] pattern = literal;
+            final int last = pattern.length - 1;
+            final char lastChar = pattern[last];
+
+            int i = from;
+            int limit = end - pattern.length;
+            while (i <= limit) {
+                char c = buffer[i + last];
+                if (c == lastChar) {
+                    int j = last - 1;
+                    while (j >= 0 && buffer[i + j] == pattern[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += shift[c & 0xFF];
+            }
+            return -1;
+        }
+
+        @Override
+        public int find(CharSequence input, int from) {
+
+            final char[] pattern = literal;
+            final int last = pattern.length - 1;
+            final char lastChar = pattern[last];
+
+            int i = from;
+            int limit = input.length() - pattern.length;
+            while (i <= limit) {
+                char c = input.charAt(i + last);
+                if (c == lastChar) {
+                    int j = last - 1;
+                    while (j >= 0 && input.charAt(i + j) == pattern[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += shift[c & 0xFF];
+            }
+            return -1;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(KIND_LITERAL);
+            out.writeInt(literal.length);
+            TableFormat.writeChars(out, literal);
+        }
+
+        @Override
+        public String toString() {
+            return "literal prefix \"" + new String(literal) + "\"";
+        }
+    }
+
+    /**
+     * Table lookup of the characters that may start a match.
+     */
+    private static final class CharSetPrefilter extends Prefilter {
+
+        private final boolean[] firstChars = new boolean[256];
+
+        // ranges the table is built from, kept to write them
+        private final char[] lows;
+        private final char[] highs;
+
+        CharSetPrefilter(char[] pLows, char[] pHighs) {
+            lows = pLows;
+            highs = pHighs;
+            for (int r = 0; r < lows.length; r++) {
+                Arrays.fill(firstChars, lows[r], highs[r] + 1, true);
+            }
+        }
+
+        @Override
+        public int find(char[] buffer, int from, int end) {
+
+            final boolean[] table = firstChars;
+            for (int i = from; i < end; i++) {
+                char c = buffer[i];
+                if (c < 256 && table[c]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int find(CharSequence input, int from) {
+
+            final boolean[] table = firstChars;
+            final int end = input.length();
+            for (int i = from; i < end; i++) {
+                char c = input.charAt(i);
+                if (c < 256 && table[c]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            writeRanges(out, lows, highs);
+        }
+
+        @Override
+        public String toString() {
+            return "first characters";
+        }
+    }
+
+    /**
+     * Test of the ranges of characters that may start a match, by the vector
+     * kernel if available.
+     */
+    private static final class RangePrefilter extends Prefilter {
+
+        private final char[] lows;
+
+        // high minus low of each range
+        private final char[] widths;
+
+        // kept to write them
+        private final char[] highs;
+
+        private final CharRangeScanner scanner;
+
+        RangePrefilter(char[] pLows, char[] pHighs, CharRangeScanner pScanner) {
+            lows = pLows;
+            highs = pHighs;
+            widths = new char[pLows.length];
+            for (int r = 0; r < lows.length; r++) {
+                widths[r] = (char) (pHighs[r] - pLows[r]);
+            }
+            scanner = pScanner;
+        }
+
+        @Override
+        public int find(char[] buffer, int from, int end) {
+
+            if (scanner != null) {
+                return scanner.find(buffer, from, end);
+            }
+            final char[] rangeLows = lows;
+            final char[] rangeWidths = widths;
+            for (int i = from; i < end; i++) {
+                char c = buffer[i];
+                for (int r = 0; r < rangeLows.length; r++) {
+                    if ((char) (c - rangeLows[r]) <= rangeWidths[r]) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int find(CharSequence input, int from) {
+
+            final char[] rangeLows = lows;
+            final char[] rangeWidths = widths;
+            final int end = input.length();
+            for (int i = from; i < end; i++) {
+                char c = input.charAt(i);
+                for (int r = 0; r < rangeLows.length; r++) {
+                    if ((char) (c - rangeLows[r]) <= rangeWidths[r]) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            writeRanges(out, lows, highs);
+        }
+
+        @Override
+        public String toString() {
+            return scanner != null ? "first character ranges, vectorized" : "first character ranges";
+        }
+    }
+
+}
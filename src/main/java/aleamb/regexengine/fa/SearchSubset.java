@@ -0,0 +1,78 @@
+package aleamb.regexengine.fa;
+
+import java.util.Arrays;
+
+/**
+ * Subset of states of a nondeterministic automaton used by leftmost-longest
+ * search.
+ *
+ * States are split in groups ordered by the position where they started to
+ * match: first group holds the states of the leftmost start. A state belongs
+ * only to the first group that reaches it, because a later start in the same
+ * state can never give a more leftmost match. Groups are stored one after
+ * another in <code>states</code>, each one sorted and ended by
+ * {@link #GROUP_END}.
+ *
+ * While <code>injecting</code> is true, every move adds a new group with the
+ * initial closure, which is the implicit <code>.*</code> loop of an
+ * unanchored search. Injection stops at the first match, and groups after the
+ * first accepting one are discarded: they started later, so they can not give
+ * the leftmost match.
+ *
+ * Groups do not record positions. Their order is enough to find the end of
+ * the leftmost-longest match in a single forward pass; its start is found
+ * later running the reverse automaton backwards from that end.
+ */
+final class SearchSubset {
+
+    static final int GROUP_END = -1;
+
+    private final int[] states;
+
+    private final boolean injecting;
+
+    private final boolean accepting;
+
+    private final int hash;
+
+    SearchSubset(int[] pStates, boolean pInjecting, boolean pAccepting) {
+        states = pStates;
+        injecting = pInjecting;
+        accepting = pAccepting;
+        hash = 31 * Arrays.hashCode(states) + (injecting ? 1 : 0);
+    }
+
+    int[] getStates() {
+        return states;
+    }
+
+    boolean isInjecting() {
+        return injecting;
+    }
+
+    boolean isAccepting() {
+        return accepting;
+    }
+
+    boolean isEmpty() {
+        return states.length == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SearchSubset)) {
+            return false;
+        }
+        SearchSubset other = (SearchSubset) obj;
+        return injecting == other.injecting && Arrays.equals(states, other.states);
+    }
+
+}
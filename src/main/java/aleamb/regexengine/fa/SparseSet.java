@@ -0,0 +1,65 @@
+package aleamb.regexengine.fa;
+
+/**
+ * Set of integers in <code>[0, capacity)</code> with constant time insertion,
+ * membership test and clear (Briggs and Torczon).
+ *
+ * Members are kept in insertion order in <code>dense</code>.
+ * <code>sparse[i]</code> is the position of <code>i</code> in
+ * <code>dense</code>; it is only valid if it points back to <code>i</code>,
+ * so neither array has to be cleared.
+ */
+final class SparseSet {
+
+    private final int[] dense;
+    private final int[] sparse;
+    private int size;
+
+    SparseSet(int capacity) {
+        dense = new int[capacity];
+        sparse = new int[capacity];
+    }
+
+    boolean contains(int i) {
+        int index = sparse[i];
+        return index < size && dense[index] == i;
+    }
+
+    /**
+     * Adds a member.
+     *
+     * @return false if it already was a member.
+     */
+    boolean add(int i) {
+        if (contains(i)) {
+            return false;
+        }
+        sparse[i] = size;
+        dense[size++] = i;
+        return true;
+    }
+
+    int get(int index) {
+        return dense[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes every member added after the first <code>newSize</code> ones.
+     */
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+}
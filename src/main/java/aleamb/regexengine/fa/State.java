@@ -22,6 +22,9 @@ public class State implements Comparable<State> {
 
     private int id = -1;
 
+    // identifiers of patterns accepted by this state, in a set of patterns.
+    private int[] patterns;
+
     public State() {
         transitions = new ArrayList<Transition>();
     }
@@ -65,6 +68,18 @@ public class State implements Comparable<State> {
         this.id = id;
     }
 
+    /**
+     * @return sorted identifiers of patterns accepted by this state when
+     *         automaton recognizes a set of patterns, or null.
+     */
+    public int[] getPatterns() {
+        return patterns;
+    }
+
+    public void setPatterns(int[] patterns) {
+        this.patterns = patterns;
+    }
+
     public boolean hasTransitions() {
         return transitions != null && !transitions.isEmpty();
     }
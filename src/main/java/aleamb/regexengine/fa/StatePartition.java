@@ -0,0 +1,139 @@
+package aleamb.regexengine.fa;
+
+import java.util.Arrays;
+
+/**
+ * Partition of a set of states into disjoint blocks, used by DFA minimization.
+ *
+ * States of each block are stored contiguously. Refinement is done in two
+ * steps: states are marked with {@link #mark(int)} and then every block with
+ * marked and unmarked states is split with {@link #split()}, moving marked
+ * states to a new block. Both operations take time proportional to the number
+ * of marked states.
+ */
+class StatePartition {
+
+    // states ordered by block
+    private final int[] elements;
+
+    // position of each state in elements
+    private final int[] location;
+
+    private final int[] blockOf;
+
+    private final int[] blockStart;
+
+    private final int[] blockEnd;
+
+    // marked states of each block, stored at the beginning of the block
+    private final int[] markedCount;
+
+    // blocks with marked states
+    private final int[] touched;
+
+    private int touchedCount;
+
+    private int blockCount;
+
+    StatePartition(int stateCount) {
+
+        elements = new int[stateCount];
+        location = new int[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            elements[i] = i;
+            location[i] = i;
+        }
+        blockOf = new int[stateCount];
+        blockStart = new int[stateCount];
+        blockEnd = new int[stateCount];
+        markedCount = new int[stateCount];
+        touched = new int[stateCount];
+
+        blockEnd[0] = stateCount;
+        blockCount = 1;
+    }
+
+    void mark(int state) {
+
+        int block = blockOf[state];
+        int firstUnmarked = blockStart[block] + markedCount[block];
+        int position = location[state];
+
+        if (position < firstUnmarked) {
+            return;
+        }
+        if (markedCount[block] == 0) {
+            touched[touchedCount++] = block;
+        }
+
+        int other = elements[firstUnmarked];
+        elements[firstUnmarked] = state;
+        location[state] = firstUnmarked;
+        elements[position] = other;
+        location[other] = position;
+
+        markedCount[block]++;
+    }
+
+    /**
+     * Splits blocks with marked states. Marked states of the i-th block
+     * returned move to the block numbered
+     * <code>getBlockCount() - splitBlocks.length + i</code>.
+     *
+     * @return blocks that have been split.
+     */
+    int[] split() {
+
+        int[] splitBlocks = new int[touchedCount];
+        int splitCount = 0;
+
+        for (int i = 0; i < touchedCount; i++) {
+            int block = touched[i];
+            int marked = markedCount[block];
+            markedCount[block] = 0;
+
+            if (marked < blockEnd[block] - blockStart[block]) {
+                int newBlock = blockCount++;
+                blockStart[newBlock] = blockStart[block];
+                blockEnd[newBlock] = blockStart[block] + marked;
+                blockStart[block] += marked;
+                for (int j = blockStart[newBlock]; j < blockEnd[newBlock]; j++) {
+                    blockOf[elements[j]] = newBlock;
+                }
+                splitBlocks[splitCount++] = block;
+            }
+        }
+        touchedCount = 0;
+
+        return Arrays.copyOf(splitBlocks, splitCount);
+    }
+
+    /**
+     * Copies states of a block.
+     *
+     * @param block
+     *            block.
+     * @param target
+     *            array large enough for the block.
+     * @return number of states copied.
+     */
+    int copyBlock(int block, int[] target) {
+
+        int size = blockEnd[block] - blockStart[block];
+        System.arraycopy(elements, blockStart[block], target, 0, size);
+        return size;
+    }
+
+    int getBlock(int state) {
+        return blockOf[state];
+    }
+
+    int getBlockSize(int block) {
+        return blockEnd[block] - blockStart[block];
+    }
+
+    int getBlockCount() {
+        return blockCount;
+    }
+
+}
@@ -1,8 +1,6 @@
 package aleamb.regexengine.fa;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
 
 /**
  * 
@@ -10,54 +8,28 @@ import java.util.Set;
  * 
  * This structure is used in powerset algorithm for transform nodeterministic
  * finite automaton to deterministic finite automaton.
+ * 
+ * Subset is a {@link BitSet} with the identifiers of its states. It is also
+ * the identity of the subset, so subsets can be interned in a hash map.
  */
 class SubSetState {
 
-    private boolean mark;
-
-    // subset of states.
-    private Set<State> states = new HashSet<State>();
-
     // state that groups to the subset
     private State state = new State();
 
-    private String id;
+    // subset of states.
+    private BitSet id;
 
-    public SubSetState(Set<State> states) {
+    public SubSetState(BitSet states) {
         super();
-        this.states = states;
-        id = buildId();
-    }
-
-    private String buildId() {
-
-        int[] ids = new int[states.size()];
-        int i = 0;
-        for (State s : states) {
-            ids[i++] = s.getId();
-
-        }
-        Arrays.sort(ids);
-        return Arrays.toString(ids);
-    }
-
-    public boolean isMark() {
-        return mark;
-    }
-
-    public void setMark(boolean mark) {
-        this.mark = mark;
-    }
-
-    public Set<State> getStates() {
-        return states;
+        id = states;
     }
 
     public State getState() {
         return state;
     }
 
-    public String getId() {
+    public BitSet getId() {
         return id;
     }
 
@@ -90,6 +62,6 @@ class SubSetState {
 
     public boolean isEmpty() {
 
-        return states.isEmpty();
+        return id.isEmpty();
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package aleamb.regexengine.fa;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of arrays of transition tables.
+ *
+ * Values are big endian, as {@link DataOutput} and {@link ByteBuffer} by
+ * default. Arrays of chars and bytes are padded to a multiple of 4 bytes, so
+ * every array of ints starts at an offset multiple of 4 and can be copied from
+ * a mapped file in bulk.
+ */
+final class TableFormat {
+
+    private TableFormat() {
+    }
+
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer buffer, int length) {
+
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    static void writeChars(DataOutput out, char[] values) throws IOException {
+
+        for (char value : values) {
+            out.writeChar(value);
+        }
+        if (values.length % 2 != 0) {
+            out.writeChar(0);
+        }
+    }
+
+    static char[] readChars(ByteBuffer buffer, int length) {
+
+        char[] values = new char[length];
+        buffer.asCharBuffer().get(values);
+        buffer.position(buffer.position() + 2 * (length + length % 2));
+        return values;
+    }
+
+    static void writeBooleans(DataOutput out, boolean[] values) throws IOException {
+
+        for (boolean value : values) {
+            out.writeByte(value ? 1 : 0);
+        }
+        for (int i = values.length; i % 4 != 0; i++) {
+            out.writeByte(0);
+        }
+    }
+
+    static boolean[] readBooleans(ByteBuffer buffer, int length) {
+
+        boolean[] values = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buffer.get() != 0;
+        }
+        buffer.position(buffer.position() + (4 - length % 4) % 4);
+        return values;
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Corrupt transition table: " + message);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package aleamb.regexengine.fa;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Deterministic finite automaton flattened into arrays.
+ *
+ * States are numbered from 0 and characters are grouped into classes by a
+ * {@link CharClassMap}. Next state for a state <code>s</code> and a class
+ * <code>c</code> is stored in <code>table[s * classCount + c]</code>, or
+ * {@link #NO_STATE} if there is no transition.
+ *
+ * This is the structure executed by the regex engine: one array lookup for
+ * each input character and no allocation at all.
+ *
+ * Automata that recognize a set of patterns also keep, for every accepting
+ * state, the identifiers of the patterns it accepts.
+ *
+ * Tables built by {@link AutomatonBuilder#generateTransitionTable(Automaton)}
+ * are complete and immutable. Subclasses may build states on demand: their
+ * entries may be {@link #UNKNOWN} until {@link #computeNext(int, int, int)}
+ * is called for them.
+ */
+public class TransitionTable {
+
+    /**
+     * Value of a table entry without transition.
+     */
+    public static final int NO_STATE = -1;
+
+    /**
+     * Value of a table entry not computed yet.
+     */
+    public static final int UNKNOWN = -2;
+
+    private final CharClassMap classMap;
+
+    private final int classCount;
+
+    protected int[] table;
+
+    protected boolean[] accepting;
+
+    // patterns accepted by each state, null if automaton has no patterns
+    protected int[][] patterns;
+
+    private final int initialState;
+
+    TransitionTable(CharClassMap pClassMap, int[] pTable, boolean[] pAccepting, int pInitialState) {
+        this(pClassMap, pTable, pAccepting, null, pInitialState);
+    }
+
+    TransitionTable(CharClassMap pClassMap, int[] pTable, boolean[] pAccepting, int[][] pPatterns,
+            int pInitialState) {
+        classMap = pClassMap;
+        patterns = pPatterns;
+        classCount = pClassMap.getClassCount();
+        table = pTable;
+        accepting = pAccepting;
+        initialState = pInitialState;
+    }
+
+    /**
+     * Next state for a character.
+     *
+     * @param state
+     *            current state.
+     * @param c
+     *            input character.
+     * @return next state or {@link #NO_STATE}.
+     */
+    public int next(int state, char c) {
+        return table[state * classCount + classMap.classOf(c)];
+    }
+
+    /**
+     * Computes an {@link #UNKNOWN} entry. Arrays returned by
+     * {@link #getTable()} and {@link #getAccepting()} may be replaced by this
+     * call, so callers must read them again.
+     *
+     * @param state
+     *            current state.
+     * @param charClass
+     *            class of input character.
+     * @param position
+     *            position of input character, used for statistics.
+     * @return next state or {@link #NO_STATE}.
+     */
+    public int computeNext(int state, int charClass, int position) {
+        return table[state * classCount + charClass];
+    }
+
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * Patterns accepted by a state. Returned array is shared and must not be
+     * modified.
+     *
+     * @param state
+     *            a state.
+     * @return sorted identifiers of patterns, or null if the state accepts no
+     *         pattern or automaton does not recognize a set of patterns.
+     */
+    public int[] getPatterns(int state) {
+        return patterns == null ? null : patterns[state];
+    }
+
+    public int getInitialState() {
+        return initialState;
+    }
+
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public CharClassMap getClassMap() {
+        return classMap;
+    }
+
+    /**
+     * Approximate heap size of the table, counting its arrays and its
+     * character class map.
+     *
+     * @return size in bytes.
+     */
+    public long getEstimatedBytes() {
+
+        long bytes = 2L * CharClassMap.ARRAY_HEADER_BYTES + 4L * table.length + accepting.length;
+        if (patterns != null) {
+            bytes += CharClassMap.ARRAY_HEADER_BYTES + 4L * patterns.length;
+            for (int[] statePatterns : patterns) {
+                if (statePatterns != null) {
+                    bytes += CharClassMap.ARRAY_HEADER_BYTES + 4L * statePatterns.length;
+                }
+            }
+        }
+        return bytes + classMap.getEstimatedBytes();
+    }
+
+    /**
+     * Writes the table in a binary format read by {@link #read(ByteBuffer)}:
+     * number of states, initial state, character class map, transitions and
+     * accepting flags. Arrays are aligned to 4 bytes.
+     *
+     * @param out
+     *            output.
+     * @throws IOException
+     *             on write error.
+     * @throws UnsupportedOperationException
+     *             if table builds states on demand or recognizes a set of
+     *             patterns.
+     */
+    public void write(DataOutput out) throws IOException {
+
+        if (getClass() != TransitionTable.class || patterns != null) {
+            throw new UnsupportedOperationException("Only complete tables of a single pattern can be written");
+        }
+        out.writeInt(accepting.length);
+        out.writeInt(initialState);
+        classMap.write(out);
+        TableFormat.writeInts(out, table);
+        TableFormat.writeBooleans(out, accepting);
+    }
+
+    /**
+     * Reads a table written by {@link #write(DataOutput)}, from the position
+     * of a buffer, and moves the position after it. Buffer may be a mapped
+     * file: arrays are copied in bulk and the buffer is not kept.
+     *
+     * @param buffer
+     *            input buffer.
+     * @return table.
+     * @throws IllegalArgumentException
+     *             if data is not a valid table.
+     */
+    public static TransitionTable read(ByteBuffer buffer) {
+
+        int stateCount = buffer.getInt();
+        int initialState = buffer.getInt();
+        TableFormat.check(stateCount > 0 && initialState >= 0 && initialState < stateCount, "table header");
+
+        CharClassMap classMap = CharClassMap.read(buffer);
+        TableFormat.check((long) stateCount * classMap.getClassCount() <= buffer.remaining() / 4, "table size");
+        int[] table = TableFormat.readInts(buffer, stateCount * classMap.getClassCount());
+        for (int next : table) {
+            TableFormat.check(next >= NO_STATE && next < stateCount, "transition");
+        }
+        boolean[] accepting = TableFormat.readBooleans(buffer, stateCount);
+
+        return new TransitionTable(classMap, table, accepting, initialState);
+    }
+
+    /**
+     * Raw transitions. Returned array is shared and must not be modified.
+     *
+     * @return transitions indexed by <code>state * classCount + class</code>.
+     */
+    public int[] getTable() {
+        return table;
+    }
+
+    /**
+     * Raw accepting flags. Returned array is shared and must not be modified.
+     *
+     * @return accepting flag for each state.
+     */
+    public boolean[] getAccepting() {
+        return accepting;
+    }
+
+}
@@ -0,0 +1,142 @@
+package aleamb.regexengine.fa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Translates the characters accepted by a transition into UTF-8 byte
+ * sequences.
+ *
+ * Every code point range is split until each piece is encoded as a sequence
+ * of byte ranges, one per byte, whose product is exactly the encodings of the
+ * piece. Surrogates have no encoding of their own: a transition that accepts
+ * every surrogate, like <code>.</code> or an excluded set, accepts every
+ * supplementary code point, and other surrogates are dropped.
+ */
+final class Utf8Ranges {
+
+    private static final int MIN_SURROGATE = 0xD800;
+    private static final int MAX_SURROGATE = 0xDFFF;
+
+    // last code point encoded with 1, 2 and 3 bytes
+    private static final int[] MAX_CODE_POINTS = { 0x7F, 0x7FF, 0xFFFF };
+
+    private Utf8Ranges() {
+    }
+
+    /**
+     * @param t
+     *            transition that is not empty.
+     * @return byte sequences accepted instead of the transition. Each one has
+     *         the first and last byte of each position, one after another.
+     */
+    static List<int[]> sequences(Transition t) {
+
+        boolean[] boundaries = new boolean[Character.MAX_VALUE + 2];
+        boundaries[0] = true;
+        boundaries[Character.MAX_VALUE + 1] = true;
+        CharClassMap.addBoundaries(t, boundaries);
+
+        List<int[]> sequences = new ArrayList<int[]>();
+        int surrogates = 0;
+
+        int intervalStart = 0;
+        while (intervalStart <= Character.MAX_VALUE) {
+            int intervalEnd = intervalStart + 1;
+            while (!boundaries[intervalEnd]) {
+                intervalEnd++;
+            }
+            if (t.match((char) intervalStart)) {
+                int last = intervalEnd - 1;
+                surrogates += Math.max(0, Math.min(last, MAX_SURROGATE) - Math.max(intervalStart, MIN_SURROGATE) + 1);
+                if (intervalStart < MIN_SURROGATE) {
+                    split(intervalStart, Math.min(last, MIN_SURROGATE - 1), sequences);
+                }
+                if (last > MAX_SURROGATE) {
+                    split(Math.max(intervalStart, MAX_SURROGATE + 1), last, sequences);
+                }
+            }
+            intervalStart = intervalEnd;
+        }
+
+        if (surrogates == MAX_SURROGATE - MIN_SURROGATE + 1) {
+            split(Character.MIN_SUPPLEMENTARY_CODE_POINT, Character.MAX_CODE_POINT, sequences);
+        }
+        return sequences;
+    }
+
+    private static void split(int start, int end, List<int[]> sequences) {
+
+        int[] pending = { start, end };
+        int pendingCount = 1;
+
+        next: while (pendingCount > 0) {
+
+            pendingCount--;
+            int first = pending[pendingCount * 2];
+            int last = pending[pendingCount * 2 + 1];
+
+            // same encoded length
+            for (int max : MAX_CODE_POINTS) {
+                if (first <= max && last > max) {
+                    pending = push(pending, pendingCount++, max + 1, last);
+                    pending = push(pending, pendingCount++, first, max);
+                    continue next;
+                }
+            }
+
+            // same leading bytes, and whole ranges of trailing bytes
+            for (int bits = 6; bits <= 18; bits += 6) {
+                int mask = (1 << bits) - 1;
+                if ((first & ~mask) != (last & ~mask)) {
+                    if ((first & mask) != 0) {
+                        pending = push(pending, pendingCount++, (first | mask) + 1, last);
+                        pending = push(pending, pendingCount++, first, first | mask);
+                        continue next;
+                    }
+                    if ((last & mask) != mask) {
+                        pending = push(pending, pendingCount++, last & ~mask, last);
+                        pending = push(pending, pendingCount++, first, (last & ~mask) - 1);
+                        continue next;
+                    }
+                }
+            }
+
+            int[] firstBytes = encode(first);
+            int[] lastBytes = encode(last);
+            int[] sequence = new int[firstBytes.length * 2];
+            for (int i = 0; i < firstBytes.length; i++) {
+                sequence[i * 2] = firstBytes[i];
+                sequence[i * 2 + 1] = lastBytes[i];
+            }
+            sequences.add(sequence);
+        }
+    }
+
+    private static int[] encode(int codePoint) {
+
+        if (codePoint <= MAX_CODE_POINTS[0]) {
+            return new int[] { codePoint };
+        }
+        if (codePoint <= MAX_CODE_POINTS[1]) {
+            return new int[] { 0xC0 | codePoint >> 6, 0x80 | codePoint & 0x3F };
+        }
+        if (codePoint <= MAX_CODE_POINTS[2]) {
+            return new int[] { 0xE0 | codePoint >> 12, 0x80 | codePoint >> 6 & 0x3F, 0x80 | codePoint & 0x3F };
+        }
+        return new int[] { 0xF0 | codePoint >> 18, 0x80 | codePoint >> 12 & 0x3F, 0x80 | codePoint >> 6 & 0x3F,
+                0x80 | codePoint & 0x3F };
+    }
+
+    private static int[] push(int[] pending, int index, int first, int last) {
+
+        if (index * 2 == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[index * 2] = first;
+        pending[index * 2 + 1] = last;
+        return pending;
+    }
+
+}
@@ -0,0 +1,67 @@
+package aleamb.regexengine.fa;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link CharRangeScanner} on the Vector API, loaded by {@link Prefilter}
+ * only when module <code>jdk.incubator.vector</code> is available.
+ *
+ * Characters are loaded in vectors of the preferred width of the processor,
+ * 16 to 32 characters, and each range is tested with one subtraction and one
+ * unsigned comparison against its width. Remaining characters are tested one
+ * by one.
+ */
+final class VectorRangeScanner implements CharRangeScanner {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private final char[] lows;
+
+    // high minus low of each range
+    private final char[] widths;
+
+    VectorRangeScanner(char[] pLows, char[] pHighs) {
+        lows = pLows.clone();
+        widths = new char[pLows.length];
+        for (int r = 0; r < lows.length; r++) {
+            widths[r] = (char) (pHighs[r] - pLows[r]);
+        }
+    }
+
+    @Override
+    public int find(char[] buffer, int from, int end) {
+
+        final char[] rangeLows = lows;
+        final char[] rangeWidths = widths;
+        final int ranges = rangeLows.length;
+
+        int i = from;
+        int bound = from + SPECIES.loopBound(end - from);
+        for (; i < bound; i += SPECIES.length()) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, i);
+            VectorMask<Short> found = chars.sub((short) rangeLows[0]).compare(VectorOperators.UNSIGNED_LE,
+                    (short) rangeWidths[0]);
+            for (int r = 1; r < ranges; r++) {
+                found = found.or(chars.sub((short) rangeLows[r]).compare(VectorOperators.UNSIGNED_LE,
+                        (short) rangeWidths[r]));
+            }
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+
+        for (; i < end; i++) {
+            char c = buffer[i];
+            for (int r = 0; r < ranges; r++) {
+                if ((char) (c - rangeLows[r]) <= rangeWidths[r]) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+}
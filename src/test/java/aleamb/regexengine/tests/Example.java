@@ -19,11 +19,8 @@ public class Example {
 		// almacenar resultados de cada búsqueda
 		RegexMatchResult regexMatchResult = new RegexMatchResult();
 
-		// preparar input
-		char buffer[] = text.toCharArray();
-
 		// meintras encuentre números...
-		while (regex.match(buffer, regexMatchResult)) {
+		while (regex.match(text, regexMatchResult)) {
 			int start = regexMatchResult.getMatchStartPosition();
 			int length = regexMatchResult.getMatchLength();
 			System.out
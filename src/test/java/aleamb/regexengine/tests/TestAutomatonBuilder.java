@@ -0,0 +1,216 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import aleamb.regexengine.fa.AhoCorasick;
+import aleamb.regexengine.fa.Automaton;
+import aleamb.regexengine.fa.AutomatonBuilder;
+import aleamb.regexengine.fa.LazyTransitionTable;
+import aleamb.regexengine.fa.NFASimulator;
+import aleamb.regexengine.fa.Prefilter;
+import aleamb.regexengine.fa.State;
+import aleamb.regexengine.fa.Transition;
+import aleamb.regexengine.fa.TransitionTable;
+import aleamb.regexengine.parser.LexicalAnalyzer;
+import aleamb.regexengine.parser.Parser;
+
+public class TestAutomatonBuilder {
+
+	@Test
+	public void testDisjointTransitions() {
+		assertDeterministic("(e|[a-z])+");
+		assertDeterministic("[^abc]+[a-z]");
+		assertDeterministic("[a-z]*lorem.*");
+		assertDeterministic("[^a-m]x|[0-9a-z]y");
+	}
+
+	@Test
+	public void testAdjacentRangesMerged() {
+		// [a-c] and [d-z] lead to the same set of states, so only one
+		// transition is needed from the initial state.
+		Automaton dfa = dfa("[a-cd-z]");
+		int transitions = 0;
+		for (Transition t : dfa.getInitialState().getTransitions()) {
+			transitions++;
+		}
+		assertEquals(1, transitions);
+	}
+
+	@Test
+	public void testMinimize() {
+		assertEquals(1, AutomatonBuilder.minimizeDFA(dfa("(a|b)*")).getStateCount());
+		assertEquals(2, AutomatonBuilder.minimizeDFA(dfa("a|[a-c]")).getStateCount());
+		assertEquals(3, AutomatonBuilder.minimizeDFA(dfa("(aa|b)+")).getStateCount());
+
+		Automaton dfa = dfa("(lorem|ipsum|dolor)+");
+		Automaton minimized = AutomatonBuilder.minimizeDFA(dfa);
+		assertEquals(13, minimized.getStateCount());
+		assertTrue(minimized.getStateCount() < dfa.getStateCount());
+		assertDeterministic(minimized);
+	}
+
+	@Test(timeout = 10000)
+	public void testLargePattern() {
+		StringBuilder regex = new StringBuilder("(lorem");
+		for (int i = 0; i < 60; i++) {
+			regex.append("|[a-z]x").append((char) ('a' + i % 26)).append(i % 10);
+		}
+		regex.append(")+[0-9]*");
+		Automaton dfa = dfa(regex.toString());
+		assertDeterministic(dfa);
+	}
+
+	@Test(timeout = 10000)
+	public void testNestedStars() {
+		StringBuilder regex = new StringBuilder("a");
+		for (int i = 0; i < 20; i++) {
+			regex.insert(0, '(').append(")*");
+		}
+		Automaton minimized = AutomatonBuilder.minimizeDFA(dfa(regex.toString()));
+		assertEquals(1, minimized.getStateCount());
+	}
+
+	@Test
+	public void testLazyTableBounded() {
+
+		// reverse automaton accepts [ab]*a[ab][ab][ab][ab][ab]
+		LazyTransitionTable table = AutomatonBuilder.generateLazyDFA(nfa("[ab][ab][ab][ab][ab]a[ab]*"))
+				.newReverseTable(3);
+		char[] input = new char[10000];
+		int state = table.getInitialState();
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (i * 7919) % 5 < 2 ? 'a' : 'b';
+			int next = table.next(state, input[i]);
+			if (next == TransitionTable.UNKNOWN) {
+				next = table.computeNext(state, table.getClassMap().classOf(input[i]), i);
+			}
+			state = next;
+			assertTrue(table.getStateCount() <= 3);
+			if (i >= 5) {
+				assertEquals(input[i - 5] == 'a', table.isAccepting(state));
+			}
+		}
+		assertTrue(table.getFlushCount() > 0);
+		assertTrue(table.isSimulating());
+	}
+
+	@Test
+	public void testPrefilter() {
+
+		Prefilter literal = Prefilter.fromNFA(nfa("lorem[a-z]*"));
+		assertEquals(3, literal.find("lo lorem".toCharArray(), 0));
+		assertEquals(-1, literal.find("lo lorem".toCharArray(), 4));
+		assertEquals(1, Prefilter.fromNFA(nfa("aab")).find("aaab".toCharArray(), 0));
+
+		Prefilter firstChars = Prefilter.fromNFA(nfa("(error|warn): .*"));
+		assertEquals(5, firstChars.find("info warn: x".toCharArray(), 0));
+		assertEquals(-1, firstChars.find("info".toCharArray(), 0));
+
+		char[] digits = new char[1000];
+		Arrays.fill(digits, 'x');
+		digits[777] = '7';
+		Prefilter ranges = Prefilter.fromNFA(nfa("[0-9]+"));
+		assertEquals(777, ranges.find(digits, 0));
+		assertEquals(-1, ranges.find(digits, 778));
+		assertEquals(-1, ranges.find(digits, 0, 777));
+		digits[999] = '9';
+		assertEquals(999, ranges.find(digits, 778));
+		assertEquals(999, ranges.find(new String(digits), 778));
+
+		Prefilter cyrillic = Prefilter.fromNFA(nfa("[\u0430-\u044f]+"));
+		assertEquals(3, cyrillic.find("abc\u0434a".toCharArray(), 0));
+		assertEquals(-1, cyrillic.find("abc\u0534a".toCharArray(), 0));
+
+		assertNull(Prefilter.fromNFA(nfa("a*")));
+		assertNull(Prefilter.fromNFA(nfa("[^a]b")));
+	}
+
+	@Test
+	public void testVectorPrefilter() {
+
+		// set by the vector profile, which compiles the Vector API kernel
+		if (Boolean.getBoolean("aleamb.regexengine.expectVector")) {
+			assertTrue(Prefilter.isVectorized());
+		}
+
+		// a candidate at every lane of the vectors and of the scalar tail
+		Prefilter digits = Prefilter.fromNFA(nfa("[0-9]+"));
+		char[] input = new char[300];
+		Arrays.fill(input, '\u0434');
+		for (int i = 0; i < input.length; i++) {
+			input[i] = '7';
+			assertEquals(i, digits.find(input, 0));
+			assertEquals(-1, digits.find(input, 0, i));
+			assertEquals(-1, digits.find(input, i + 1));
+			input[i] = '\u0434';
+		}
+	}
+
+	@Test
+	public void testAhoCorasick() {
+
+		AhoCorasick automaton = AhoCorasick.build(Arrays.asList("bc", "abcd", "c"));
+		assertEquals(4L, automaton.search("abcd".toCharArray(), 0));
+		assertEquals((1L << 32) | 2, automaton.search("abce".toCharArray(), 0));
+		assertEquals((2L << 32) | 1, automaton.search("abce".toCharArray(), 2));
+		assertEquals(-1L, automaton.search("abab".toCharArray(), 0));
+
+		AhoCorasick nested = AhoCorasick.build(Arrays.asList("he", "she", "hers"));
+		assertEquals((1L << 32) | 3, nested.search("ushers".toCharArray(), 0));
+		assertEquals((2L << 32) | 4, nested.search("ushers".toCharArray(), 2));
+	}
+
+	@Test
+	public void testNFASimulatorFind() {
+
+		NFASimulator simulator = AutomatonBuilder.generateNFAProgram(nfa("(ab+|b+c)")).newSimulator();
+		char[] input = "xabbbbc".toCharArray();
+
+		assertTrue(simulator.search(input, 0));
+		assertEquals(1, simulator.getMatchStart());
+		assertEquals(6, simulator.getMatchEnd());
+
+		// stops at first match end
+		assertTrue(simulator.find(input, 0, input.length));
+		assertEquals(3, simulator.getMatchEnd());
+		assertTrue(simulator.find("xbbc", 0));
+		assertEquals(4, simulator.getMatchEnd());
+		assertFalse(simulator.find(input, 0, 2));
+		assertFalse(simulator.find("xbbb", 0));
+	}
+
+	private void assertDeterministic(String regex) {
+		assertDeterministic(dfa(regex));
+	}
+
+	private void assertDeterministic(Automaton dfa) {
+
+		for (State state : dfa.getStateList()) {
+			for (char c = 0; c < Character.MAX_VALUE; c++) {
+				int matches = 0;
+				for (Transition t : state.getTransitions()) {
+					if (t.match(c)) {
+						matches++;
+					}
+				}
+				assertFalse("overlapping transitions for " + (int) c, matches > 1);
+			}
+		}
+	}
+
+	static Automaton nfa(String regex) {
+		return AutomatonBuilder.generateFromAST(new Parser(new LexicalAnalyzer(regex)).analyze());
+	}
+
+	static Automaton dfa(String regex) {
+		return AutomatonBuilder.generateDFAFromNFA(nfa(regex));
+	}
+
+}
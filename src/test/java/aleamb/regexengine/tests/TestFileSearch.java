@@ -0,0 +1,118 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import aleamb.regexengine.FileSearch;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.StreamMatchHandler;
+
+public class TestFileSearch {
+
+	private static File file;
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void createFile() throws IOException {
+
+		String text = FileUtils.readFileToString(new File("text.txt"));
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			data.append(text).append("\ncaña ").append(i).append('\n');
+		}
+		file = File.createTempFile("filesearch", ".txt");
+		FileUtils.writeStringToFile(file, data.toString(), "UTF-8");
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void deleteFile() {
+		file.delete();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testMatchesSameAsStream() throws IOException {
+
+		for (String regexExpression : new String[] { "[a-z]+", "lorem", "(lorem|ipsum)", "[0-9]*", ".+", "ñ." }) {
+			Regex regex = RegexEngine.compile(regexExpression);
+
+			List<Long> expected = new ArrayList<Long>();
+			InputStream input = new FileInputStream(file);
+			try {
+				regex.streamMatcher().scan(input, collect(expected));
+			} finally {
+				input.close();
+			}
+
+			for (int chunkSize : new int[] { 1, 100, 5000, FileSearch.MAX_CHUNK_SIZE }) {
+				List<Long> actual = new ArrayList<Long>();
+				long count = FileSearch.search(regex, file, executor, chunkSize, collect(actual));
+				assertEquals(regexExpression + " " + chunkSize, expected, actual);
+				assertEquals(expected.size() / 2, count);
+			}
+
+			// chunks sized from the file
+			List<Long> actual = new ArrayList<Long>();
+			assertEquals(expected.size() / 2, FileSearch.search(regex, file, executor, collect(actual)));
+			assertEquals(regexExpression, expected, actual);
+			actual.clear();
+			assertEquals(expected.size() / 2, FileSearch.search(regex, file, collect(actual)));
+			assertEquals(regexExpression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testStop() throws IOException {
+
+		final List<Long> starts = new ArrayList<Long>();
+		long count = FileSearch.search(RegexEngine.compile("caña"), file, executor, 100, new StreamMatchHandler() {
+			public boolean onMatch(long start, long end) {
+				starts.add(start);
+				return starts.size() < 3;
+			}
+		});
+		assertEquals(3, count);
+		assertEquals(3, starts.size());
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+
+		File empty = File.createTempFile("filesearch", ".txt");
+		try {
+			List<Long> matches = new ArrayList<Long>();
+			FileSearch.search(RegexEngine.compile("a*"), empty, collect(matches));
+			assertEquals(2, matches.size());
+			assertEquals(0, FileSearch.search(RegexEngine.compile("a"), empty, collect(matches)));
+		} finally {
+			empty.delete();
+		}
+	}
+
+	private StreamMatchHandler collect(final List<Long> matches) {
+		return new StreamMatchHandler() {
+			public boolean onMatch(long start, long end) {
+				matches.add(start);
+				matches.add(end);
+				return true;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,128 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.MatchBudget;
+import aleamb.regexengine.MatchStatus;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexMatcher;
+import aleamb.regexengine.RegexOptions;
+
+public class TestMatchBudget {
+
+	@Test
+	public void testMatchesSameWithinBudget() throws IOException {
+
+		String text = FileUtils.readFileToString(new File("text.txt"));
+		StringBuilder data = new StringBuilder();
+		while (data.length() < 20000) {
+			data.append(text);
+		}
+		String input = data.toString();
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem");
+		expressions.add("(lorem|ipsum)");
+		expressions.add("[0-9]+");
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				Regex regex = RegexEngine.compile(regexExpression, options);
+				List<Integer> expected = matches(regex.matcher(input), null);
+				String message = mode + " " + regexExpression;
+				assertEquals(message, expected, matches(regex.matcher(input), new MatchBudget()));
+				assertEquals(message, expected, matches(regex.matcher(input.toCharArray()), new MatchBudget()));
+				assertEquals(message, expected, matches(regex.matcher(new StringBuilder(input)), new MatchBudget()));
+			}
+		}
+	}
+
+	@Test
+	public void testMaxChars() {
+
+		char[] input = new char[100000];
+		Arrays.fill(input, 'a');
+		input[input.length - 1] = '7';
+		for (String regexExpression : new String[] { "b", "[0-9]+", "a*7" }) {
+			for (ExecutionMode mode : ExecutionMode.values()) {
+				RegexOptions options = new RegexOptions();
+				options.setExecutionMode(mode);
+				Regex regex = RegexEngine.compile(regexExpression, options);
+
+				MatchBudget budget = new MatchBudget();
+				budget.setMaxChars(10000);
+				RegexMatchResult result = new RegexMatchResult();
+				result.setMatchStartPosition(-1);
+				assertEquals(MatchStatus.BUDGET_EXCEEDED, regex.match(input, result, budget));
+				assertEquals(-1, result.getMatchStartPosition());
+				assertTrue(budget.getCharsExamined() > 10000);
+				assertTrue(budget.getCharsExamined() <= 10000 + 2 * MatchBudget.CHECK_INTERVAL);
+
+				budget.setMaxChars(1000000);
+				MatchStatus expected = regexExpression.equals("b") ? MatchStatus.NO_MATCH : MatchStatus.MATCH;
+				assertEquals(regexExpression, expected, regex.match(input, result, budget));
+			}
+		}
+	}
+
+	@Test
+	public void testCancelAndDeadline() {
+
+		Regex regex = RegexEngine.compile("[a-z]+");
+		RegexMatchResult result = new RegexMatchResult();
+
+		MatchBudget budget = new MatchBudget();
+		budget.cancel();
+		assertEquals(MatchStatus.CANCELLED, regex.match("abc", result, budget));
+
+		budget = new MatchBudget();
+		budget.setDeadline(1);
+		assertEquals(MatchStatus.BUDGET_EXCEEDED, regex.match("abc", result, budget));
+
+		budget = new MatchBudget();
+		budget.setTimeout(60000);
+		assertEquals(MatchStatus.MATCH, regex.match("1abc", result, budget));
+		assertEquals(1, result.getMatchStartPosition());
+		assertEquals(3, result.getMatchLength());
+	}
+
+	@Test
+	public void testMatcherResumes() {
+
+		char[] input = new char[50000];
+		Arrays.fill(input, ' ');
+		input[30000] = 'x';
+		RegexMatcher matcher = RegexEngine.compile("x+").matcher(input);
+
+		MatchBudget budget = new MatchBudget();
+		budget.setMaxChars(5000);
+		assertEquals(MatchStatus.BUDGET_EXCEEDED, matcher.find(budget));
+		assertEquals(MatchStatus.MATCH, matcher.find(new MatchBudget()));
+		assertEquals(30000, matcher.start());
+		assertEquals(MatchStatus.NO_MATCH, matcher.find(new MatchBudget()));
+	}
+
+	private List<Integer> matches(RegexMatcher matcher, MatchBudget budget) {
+
+		List<Integer> bounds = new ArrayList<Integer>();
+		while (budget == null ? matcher.find() : matcher.find(budget) == MatchStatus.MATCH) {
+			bounds.add(matcher.start());
+			bounds.add(matcher.end());
+		}
+		return bounds;
+	}
+
+}
@@ -0,0 +1,153 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexBundle;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexMatcher;
+import aleamb.regexengine.RegexOptions;
+
+public class TestRegexBundle {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		String input = FileUtils.readFileToString(new File("text.txt"));
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem");
+		expressions.add("(lorem|ipsum)");
+		expressions.add("[0-9]+");
+		expressions.add("caña|ñandú");
+
+		List<Regex> regexes = new ArrayList<Regex>();
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				regexes.add(RegexEngine.compile(regexExpression, options));
+			}
+		}
+
+		File file = File.createTempFile("regex", ".bundle");
+		try {
+			RegexBundle.write(regexes, file);
+			List<Regex> loaded = RegexBundle.read(file);
+			assertEquals(regexes.size(), loaded.size());
+
+			for (int i = 0; i < regexes.size(); i++) {
+				Regex regex = regexes.get(i);
+				Regex loadedRegex = loaded.get(i);
+				String message = regex.getCompileStats().getExecutionMode() + " "
+						+ regex.getCompileStats().getExpression();
+				assertEquals(message, regex.getCompileStats().getExpression(),
+						loadedRegex.getCompileStats().getExpression());
+				assertEquals(message, matches(regex.matcher(input)), matches(loadedRegex.matcher(input)));
+				assertEquals(message, matches(regex.matcher(input.toCharArray())),
+						matches(loadedRegex.matcher(input.toCharArray())));
+				assertEquals(message, regex.count(input), loadedRegex.count(input));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testTablesLoaded() throws IOException {
+
+		RegexOptions options = new RegexOptions();
+		options.setExecutionMode(ExecutionMode.DFA);
+		Regex regex = RegexEngine.compile("[a-zñ]+[0-9]", options);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RegexBundle.write(Arrays.asList(regex), out);
+		Regex loaded = RegexBundle.read(ByteBuffer.wrap(out.toByteArray())).get(0);
+
+		assertEquals("DFA", loaded.getCompileStats().getExecutionMode());
+		assertEquals(regex.getCompileStats().getDFAStateCount(), loaded.getCompileStats().getDFAStateCount());
+		assertEquals(0, loaded.getCompileStats().getNFAStateCount());
+
+		RegexMatchResult result = new RegexMatchResult();
+		assertTrue(loaded.match("  caña7", result));
+		assertEquals(2, result.getMatchStartPosition());
+		assertEquals(5, result.getMatchLength());
+		assertTrue(loaded.match("  caña7".getBytes("UTF-8"), result));
+		assertEquals(2, result.getMatchStartPosition());
+		assertEquals(6, result.getMatchLength());
+		assertNotNull(loaded.toString());
+	}
+
+	@Test
+	public void testPrefiltersLoaded() throws IOException {
+
+		String input = "  warn: caña лорем ипсум 2016\n error: ñandú";
+		RegexOptions options = new RegexOptions();
+		options.setExecutionMode(ExecutionMode.DFA);
+		List<Regex> regexes = new ArrayList<Regex>();
+		for (String regexExpression : Arrays.asList("caña[a-z]*", "(error|warn): .*", "[а-я]+", "[ña-c0-9]+")) {
+			regexes.add(RegexEngine.compile(regexExpression, options));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RegexBundle.write(regexes, out);
+		List<Regex> loaded = RegexBundle.read(ByteBuffer.wrap(out.toByteArray()));
+
+		for (int i = 0; i < regexes.size(); i++) {
+			String message = regexes.get(i).getCompileStats().getExpression();
+			assertEquals(message, matches(regexes.get(i).matcher(input)), matches(loaded.get(i).matcher(input)));
+			assertEquals(message, regexes.get(i).toString(), loaded.get(i).toString());
+		}
+	}
+
+	@Test
+	public void testCorruptBundle() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RegexBundle.write(Arrays.asList(RegexEngine.compile("a[bc]+d")), out);
+		byte[] bytes = out.toByteArray();
+
+		assertCorrupt(Arrays.copyOf(bytes, bytes.length - 1));
+		byte[] badMagic = bytes.clone();
+		badMagic[0] = 'X';
+		assertCorrupt(badMagic);
+		byte[] badTransition = bytes.clone();
+		Arrays.fill(badTransition, bytes.length - 64, bytes.length - 16, (byte) 0x7f);
+		assertCorrupt(badTransition);
+	}
+
+	private void assertCorrupt(byte[] bytes) {
+		try {
+			RegexBundle.read(ByteBuffer.wrap(bytes));
+			fail("Corrupt bundle loaded");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private List<Integer> matches(RegexMatcher matcher) {
+
+		List<Integer> bounds = new ArrayList<Integer>();
+		while (matcher.find()) {
+			bounds.add(matcher.start());
+			bounds.add(matcher.end());
+		}
+		return bounds;
+	}
+
+}
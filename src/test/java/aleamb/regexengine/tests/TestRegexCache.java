@@ -0,0 +1,127 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexCache;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.parser.SyntaxException;
+
+public class TestRegexCache {
+
+	@Test
+	public void testHitsAndMisses() {
+
+		RegexCache cache = new RegexCache(10);
+		Regex regex = cache.compile("[a-z]+");
+		assertSame(regex, cache.compile("[a-z]+"));
+		assertSame(regex, cache.compile("[a-z]+"));
+		cache.compile("[0-9]+");
+
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+
+		RegexCache cache = new RegexCache(1);
+		cache.compile("a");
+		cache.compile("b");
+		cache.compile("a");
+		cache.compile("c");
+
+		assertEquals(1, cache.size());
+		assertEquals(3, cache.getEvictionCount());
+		assertNotNull(cache.getIfPresent("c"));
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvictedBySize() {
+
+		RegexCache cache = new RegexCache(100);
+		for (int i = 0; i < 1000; i++) {
+			cache.compile("lorem" + i);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(900, cache.getEvictionCount());
+		assertNotNull(cache.getIfPresent("lorem999"));
+	}
+
+	@Test
+	public void testWeightBound() {
+
+		RegexCache cache = new RegexCache(1000, 5000, new RegexOptions());
+		for (int i = 0; i < 100; i++) {
+			cache.compile("(lorem|ipsum|dolor)" + i);
+		}
+		assertTrue(cache.getWeight() <= 5000);
+		assertTrue(cache.getEvictionCount() > 0);
+	}
+
+	@Test
+	public void testBoundsOfWholeCache() {
+
+		// heavier than the share of one segment, lighter than the whole cache
+		String heavy = "[a-z]+[0-9]+(lorem|ipsum|dolor)";
+		RegexCache probe = new RegexCache(1000);
+		probe.compile(heavy);
+		long heavyWeight = probe.getWeight();
+		assertTrue(heavyWeight > 5000 / 16 && heavyWeight < 5000);
+
+		RegexCache cache = new RegexCache(1000, 5000, new RegexOptions());
+		Regex regex = cache.compile(heavy);
+		assertSame(regex, cache.getIfPresent(heavy));
+		assertSame(regex, cache.compile(heavy));
+		assertEquals(0, cache.getEvictionCount());
+
+		cache = new RegexCache(31);
+		for (int i = 0; i < 31; i++) {
+			cache.compile("lorem" + i);
+		}
+		assertEquals(31, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+		cache.compile("ipsum");
+		assertEquals(31, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.getIfPresent("ipsum"));
+	}
+
+	@Test
+	public void testHeavierThanCacheNotKept() {
+
+		RegexCache cache = new RegexCache(1000, 10, new RegexOptions());
+		cache.compile("a");
+		Regex regex = cache.compile("[a-z]+[0-9]+(lorem|ipsum|dolor)");
+		assertNotNull(regex);
+		assertNull(cache.getIfPresent("[a-z]+[0-9]+(lorem|ipsum|dolor)"));
+		assertEquals(0, cache.getWeight());
+		assertEquals(0, cache.size());
+
+		cache.compile("a");
+		cache.clear();
+		assertEquals(0, cache.getWeight());
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = SyntaxException.class)
+	public void testErrorsNotCached() {
+
+		RegexCache cache = new RegexCache(10);
+		try {
+			cache.compile("()");
+		} finally {
+			assertEquals(0, cache.size());
+		}
+	}
+
+}
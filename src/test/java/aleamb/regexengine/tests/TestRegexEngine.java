@@ -1,19 +1,38 @@
 package aleamb.regexengine.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.commons.io.FileUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import aleamb.regexengine.CompileLimitException;
+import aleamb.regexengine.CompileListener;
+import aleamb.regexengine.CompileStats;
+import aleamb.regexengine.ExecutionMode;
 import aleamb.regexengine.Regex;
 import aleamb.regexengine.RegexEngine;
 import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexMatcher;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.RegexSetMatchResult;
 
 public class TestRegexEngine {
 
@@ -227,6 +246,505 @@ public class TestRegexEngine {
 		compareMatchExecution("(a|b)c");
 	}
 
+	@Test
+	public void test33() {
+		compareMatchExecution("(e|[a-z])+");
+	}
+
+	@Test
+	public void test34() {
+		compareMatchExecution("[a-f]*e[^aeiou]");
+	}
+
+	@Test
+	public void test35() {
+		compareMatchExecution("((a*)*)*m");
+	}
+
+	@Test
+	public void testMatcher() {
+
+		RegexMatcher matcher = RegexEngine.compile("[0-9]+").matcher(
+				"kjdsk65sdksdk78odla98dasdf90dsakdsj".toCharArray());
+
+		int[] expected = { 5, 7, 13, 15, 19, 21, 26, 28 };
+		for (int i = 0; i < expected.length; i += 2) {
+			assertTrue(matcher.find());
+			assertEquals(expected[i], matcher.start());
+			assertEquals(expected[i + 1], matcher.end());
+		}
+		assertFalse(matcher.find());
+
+		matcher.reset("1 22".toCharArray());
+		assertTrue(matcher.find());
+		assertEquals(0, matcher.start());
+		assertTrue(matcher.find());
+		assertEquals(2, matcher.start());
+		assertEquals(4, matcher.end());
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testMatcherEmptyMatches() {
+
+		RegexMatcher matcher = RegexEngine.compile("B*").matcher("ab".toCharArray());
+		assertTrue(matcher.find());
+		assertEquals(0, matcher.start());
+		assertEquals(0, matcher.end());
+		assertTrue(matcher.find());
+		assertEquals(1, matcher.start());
+		assertEquals(1, matcher.end());
+		assertTrue(matcher.find());
+		assertEquals(2, matcher.start());
+		assertEquals(2, matcher.end());
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testLeftmostLongest() {
+
+		for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.DFA, ExecutionMode.LAZY_DFA,
+				ExecutionMode.NFA }) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			// partial match of "aab" from 0 fails at 2, match starts at 1
+			assertMatch(mode, "aab", "aaab", options, 1, 4);
+			assertMatch(mode, "abc|b", "abc", options, 0, 3);
+			assertMatch(mode, "ab|bcd", "abcd", options, 0, 2);
+			assertMatch(mode, "a|ab", "ab", options, 0, 2);
+			assertMatch(mode, "a[bc]*d", "xabcbcbx abcd", options, 9, 13);
+			assertMatch(mode, "x*", "abc", options, 0, 0);
+			assertMatch(mode, "(ab)+c", "abababab", options, -1, -1);
+		}
+	}
+
+	@Test
+	public void testFindAllModes() {
+
+		char[] buffer = data.toCharArray();
+		for (String regexExpression : new String[] { "[A-Z][a-z]+", "(a|e)[^aeiou ]*", "[0-9]*" }) {
+			RegexMatcher expected = RegexEngine.compile(regexExpression).matcher(buffer);
+			for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.LAZY_DFA, ExecutionMode.NFA }) {
+				RegexOptions options = new RegexOptions();
+				options.setExecutionMode(mode);
+				RegexMatcher matcher = RegexEngine.compile(regexExpression, options).matcher(buffer);
+				expected.reset();
+				while (expected.find()) {
+					assertTrue(matcher.find());
+					assertEquals(regexExpression, expected.start(), matcher.start());
+					assertEquals(regexExpression, expected.end(), matcher.end());
+				}
+				assertFalse(matcher.find());
+			}
+		}
+	}
+
+	@Test
+	public void testSharedBetweenThreads() throws Exception {
+
+		final Regex regex = RegexEngine.compile("[A-Z][a-z]+");
+		final char[] buffer = data.toCharArray();
+
+		RegexMatcher expected = regex.matcher(buffer);
+		int expectedCount = 0;
+		while (expected.find()) {
+			expectedCount++;
+		}
+
+		final int[] counts = new int[8];
+		Thread[] threads = new Thread[counts.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int thread = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					RegexMatcher matcher = regex.matcher();
+					for (int j = 0; j < 50; j++) {
+						matcher.reset(buffer);
+						while (matcher.find()) {
+							counts[thread]++;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+			assertEquals(expectedCount * 50, counts[i]);
+		}
+	}
+
+	@Test
+	public void testMinimizedMatchesSame() throws IOException {
+
+		RegexOptions plain = new RegexOptions();
+		plain.setMinimize(false);
+		char[] buffer = data.toCharArray();
+
+		for (String regexExpression : FileUtils.readLines(new File("regex.txt"))) {
+			Regex minimized = RegexEngine.compile(regexExpression);
+			Regex notMinimized = RegexEngine.compile(regexExpression, plain);
+			for (int position = 0; position < buffer.length; position += 7) {
+				RegexMatchResult result1 = new RegexMatchResult();
+				result1.setPosition(position);
+				RegexMatchResult result2 = new RegexMatchResult();
+				result2.setPosition(position);
+				assertEquals(regexExpression, notMinimized.match(buffer, result1), minimized.match(buffer, result2));
+				assertEquals(regexExpression, result1.getMatchStartPosition(), result2.getMatchStartPosition());
+				assertEquals(regexExpression, result1.getMatchLength(), result2.getMatchLength());
+			}
+		}
+	}
+
+	@Test
+	public void testLazyMatchesSame() throws IOException {
+
+		RegexOptions lazy = new RegexOptions();
+		lazy.setExecutionMode(ExecutionMode.LAZY_DFA);
+		RegexOptions tinyCache = new RegexOptions();
+		tinyCache.setExecutionMode(ExecutionMode.LAZY_DFA);
+		tinyCache.setLazyCacheStates(3);
+
+		for (String regexExpression : FileUtils.readLines(new File("regex.txt"))) {
+			Regex eager = RegexEngine.compile(regexExpression);
+			assertSameMatches(regexExpression, eager, RegexEngine.compile(regexExpression, lazy));
+			assertSameMatches(regexExpression, eager, RegexEngine.compile(regexExpression, tinyCache));
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testLazyExponentialPattern() {
+
+		// deterministic automaton of this pattern has 2^21 states
+		StringBuilder regexExpression = new StringBuilder("[ab]*a");
+		for (int i = 0; i < 20; i++) {
+			regexExpression.append("[ab]");
+		}
+		RegexOptions lazy = new RegexOptions();
+		lazy.setExecutionMode(ExecutionMode.LAZY_DFA);
+		lazy.setLazyCacheStates(64);
+		Regex regex = RegexEngine.compile(regexExpression.toString(), lazy);
+
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			input.append(i == 50000 - 21 || (i * 7919) % 3 == 0 ? 'a' : 'b');
+		}
+		RegexMatchResult result = new RegexMatchResult();
+		assertTrue(regex.match(input.toString().toCharArray(), result));
+		assertEquals(0, result.getMatchStartPosition());
+		assertEquals(50000, result.getMatchLength());
+	}
+
+	@Test
+	public void testPrefilterMatchesSame() throws IOException {
+
+		RegexOptions noPrefilter = new RegexOptions();
+		noPrefilter.setPrefilter(false);
+
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem[a-z]*");
+		expressions.add("(error|warn): .*");
+		expressions.add("[A-Z][a-z]+");
+		for (String regexExpression : expressions) {
+			assertSameMatches(regexExpression, RegexEngine.compile(regexExpression, noPrefilter),
+					RegexEngine.compile(regexExpression));
+		}
+	}
+
+	@Test
+	public void testLiteralMatchesSame() throws IOException {
+
+		RegexOptions dfa = new RegexOptions();
+		dfa.setExecutionMode(ExecutionMode.DFA);
+
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem");
+		expressions.add("ipsum dolor");
+		expressions.add("(foo|bar|baz)");
+		expressions.add("(lorem|ipsum|lor|em)");
+		expressions.add("(a|b)(c|d)e");
+		for (String regexExpression : expressions) {
+			assertSameMatches(regexExpression, RegexEngine.compile(regexExpression, dfa),
+					RegexEngine.compile(regexExpression));
+		}
+		assertEquals(RegexEngine.compile("lorem", dfa).toString(), RegexEngine.compile("lorem").toString());
+		assertEquals(RegexEngine.compile("(foo|bar)", dfa).toString(), RegexEngine.compile("(foo|bar)").toString());
+		assertMatch(ExecutionMode.AUTO, "(bc|abcd|c)", "xabcd", new RegexOptions(), 1, 5);
+		assertMatch(ExecutionMode.AUTO, "(bc|abcd|c)", "xabce", new RegexOptions(), 2, 4);
+		assertMatch(ExecutionMode.AUTO, "abc", "ababc", new RegexOptions(), 2, 5);
+	}
+
+	@Test
+	public void testCharSequenceMatchesSame() throws IOException {
+
+		char[] padded = ("xx" + data + "yy").toCharArray();
+		CharBuffer heap = CharBuffer.wrap(padded, 2, data.length()).slice();
+		CharBuffer direct = ByteBuffer.allocateDirect(data.length() * 2).asCharBuffer();
+		direct.put(data).flip();
+		// direct buffer read from a position other than 0
+		CharBuffer directSlice = ByteBuffer.allocateDirect(padded.length * 2).asCharBuffer();
+		directSlice.put(padded).position(2).limit(2 + data.length());
+		CharSequence[] inputs = { data, new StringBuilder(data), heap, direct, directSlice };
+
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem");
+		expressions.add("(lorem|ipsum)");
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				Regex regex = RegexEngine.compile(regexExpression, options);
+				for (CharSequence input : inputs) {
+					assertSameMatches(mode + " " + regexExpression, regex, input);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFindMatchesCount() throws IOException {
+
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("lorem");
+		expressions.add("(lorem|ipsum)");
+		expressions.add("a*");
+		String[] lines = data.split("\n");
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				Regex regex = RegexEngine.compile(regexExpression, options);
+				String message = mode + " " + regexExpression;
+				assertFindMatchesCount(message, regex, data);
+				for (int i = 0; i < lines.length; i += 7) {
+					assertFindMatchesCount(message, regex, lines[i]);
+				}
+			}
+		}
+
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			assertTrue(RegexEngine.compile("[0-9]+", options).matches("123"));
+			assertFalse(RegexEngine.compile("[0-9]+", options).matches("12a3"));
+			assertTrue(RegexEngine.compile("a*", options).matches(""));
+			assertTrue(RegexEngine.compile("(foo|bar)", options).matches("bar".toCharArray()));
+			assertFalse(RegexEngine.compile("(foo|bar)", options).matches("barbar"));
+			assertTrue(RegexEngine.compile("lorem", options).matches(new StringBuilder("lorem")));
+			assertFalse(RegexEngine.compile("lorem", options).find("lore"));
+			assertEquals(4, RegexEngine.compile("a*", options).count("baab"));
+			assertEquals(2, RegexEngine.compile("(ab|b)", options).count("abbc"));
+		}
+	}
+
+	@Test
+	public void testCompileStats() throws Exception {
+
+		final List<CompileStats> published = new ArrayList<CompileStats>();
+		RegexOptions options = new RegexOptions();
+		options.setExecutionMode(ExecutionMode.DFA);
+		options.setCompileListener(new CompileListener() {
+			public void compiled(CompileStats stats) {
+				published.add(stats);
+			}
+		});
+		Regex regex = RegexEngine.compile("[a-z]+@[a-z]+", options);
+		CompileStats stats = regex.getCompileStats();
+		assertEquals(1, published.size());
+		assertTrue(published.get(0) == stats);
+		assertEquals("[a-z]+@[a-z]+", stats.getExpression());
+		assertEquals("DFA", stats.getExecutionMode());
+		assertFalse(stats.isLiteral());
+		assertTrue(stats.getNFAStateCount() > 0);
+		assertTrue(stats.getDFAStateCount() > 0);
+		assertTrue(stats.getAlphabetSize() > 0);
+		assertTrue(stats.getClassCount() >= 3);
+		assertTrue(stats.getEstimatedBytes() > 4 * stats.getDFAStateCount() * stats.getClassCount());
+		assertEquals(stats.getParseNanos() + stats.getNFANanos() + stats.getDFANanos() + stats.getMinimizeNanos()
+				+ stats.getTableNanos(), stats.getTotalNanos());
+
+		options.setExecutionMode(ExecutionMode.LAZY_DFA);
+		stats = RegexEngine.compile("[a-z]+@[a-z]+", options).getCompileStats();
+		assertEquals("LAZY_DFA", stats.getExecutionMode());
+		assertEquals(0, stats.getDFAStateCount());
+		assertEquals(0, stats.getDFANanos());
+
+		stats = RegexEngine.compile("lorem").getCompileStats();
+		assertTrue(stats.isLiteral());
+		assertEquals(0, stats.getNFAStateCount());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("aleamb.regexengine:type=CompileStats,name=test");
+		server.registerMBean(regex.getCompileStats(), name);
+		try {
+			assertEquals(regex.getCompileStats().getDFAStateCount(), server.getAttribute(name, "DFAStateCount"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testCompileLimits() {
+
+		// deterministic automaton of this pattern has 2^21 states
+		StringBuilder exponential = new StringBuilder("[ab]*a");
+		for (int i = 0; i < 20; i++) {
+			exponential.append("[ab]");
+		}
+		String input = "bbb" + exponential.toString().replace("[ab]*", "").replace("[ab]", "b") + "ab";
+
+		RegexOptions auto = new RegexOptions();
+		auto.setMaxDFAStates(1000);
+		Regex regex = RegexEngine.compile(exponential.toString(), auto);
+		assertEquals("LAZY_DFA", regex.getCompileStats().getExecutionMode());
+		RegexMatchResult result = new RegexMatchResult();
+		assertTrue(regex.match(input, result));
+		assertEquals(0, result.getMatchStartPosition());
+		assertEquals(24, result.getMatchLength());
+
+		auto = new RegexOptions();
+		auto.setCompileTimeout(1);
+		assertTrue(RegexEngine.compile(exponential.toString(), auto).find(input));
+		assertTrue(RegexEngine.compileSet(Arrays.asList(exponential.toString(), "c"), auto).match(input.toCharArray(),
+				new RegexSetMatchResult()));
+
+		RegexOptions dfa = new RegexOptions();
+		dfa.setExecutionMode(ExecutionMode.DFA);
+		dfa.setMaxDFAStates(1000);
+		assertLimit(CompileLimitException.Limit.DFA_STATES, exponential.toString(), dfa);
+		dfa = new RegexOptions();
+		dfa.setExecutionMode(ExecutionMode.DFA);
+		dfa.setCompileTimeout(1);
+		assertLimit(CompileLimitException.Limit.TIME, exponential.toString(), dfa);
+		dfa.setMaxNFAStates(5);
+		assertLimit(CompileLimitException.Limit.NFA_STATES, "abcdefgh", dfa);
+
+		// limits large enough do not change anything
+		dfa = new RegexOptions();
+		dfa.setMaxNFAStates(1000);
+		dfa.setMaxDFAStates(1000);
+		dfa.setCompileTimeout(60000);
+		assertEquals("DFA", RegexEngine.compile("[a-z]+@[a-z]+", dfa).getCompileStats().getExecutionMode());
+	}
+
+	private void assertLimit(CompileLimitException.Limit limit, String regexExpression, RegexOptions options) {
+
+		try {
+			RegexEngine.compile(regexExpression, options);
+			fail("Limit not exceeded: " + limit);
+		} catch (CompileLimitException e) {
+			assertEquals(limit, e.getLimit());
+		}
+	}
+
+	@Test
+	public void testMatcherCharSequence() {
+
+		RegexMatcher matcher = RegexEngine.compile("[0-9]+").matcher("a 12 b 345");
+		assertTrue(matcher.find());
+		assertEquals(2, matcher.start());
+		assertTrue(matcher.find());
+		assertEquals(7, matcher.start());
+		assertEquals(10, matcher.end());
+		assertFalse(matcher.find());
+
+		matcher.reset(new StringBuilder("1 22"));
+		assertTrue(matcher.find());
+		assertEquals(1, matcher.end());
+	}
+
+	@Test
+	public void testNFAMatchesSame() throws IOException {
+
+		RegexOptions nfa = new RegexOptions();
+		nfa.setExecutionMode(ExecutionMode.NFA);
+
+		for (String regexExpression : FileUtils.readLines(new File("regex.txt"))) {
+			assertSameMatches(regexExpression, RegexEngine.compile(regexExpression),
+					RegexEngine.compile(regexExpression, nfa));
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testAutoShortInput() {
+
+		// deterministic automaton of this pattern has 2^21 states, too many to build
+		StringBuilder regexExpression = new StringBuilder("[ab]*a");
+		for (int i = 0; i < 20; i++) {
+			regexExpression.append("[ab]");
+		}
+		String input = "bbbabbbbbbbbbbbbbbbbbbbb";
+		RegexOptions options = new RegexOptions();
+		options.setExpectedInputLength(input.length());
+		Regex regex = RegexEngine.compile(regexExpression.toString(), options);
+
+		RegexMatchResult result = new RegexMatchResult();
+		assertTrue(regex.match(input.toCharArray(), result));
+		assertEquals(0, result.getMatchStartPosition());
+		assertEquals(input.length(), result.getMatchLength());
+	}
+
+	private void assertMatch(ExecutionMode mode, String regexExpression, String input, RegexOptions options,
+			int start, int end) {
+
+		RegexMatchResult result = new RegexMatchResult();
+		boolean match = RegexEngine.compile(regexExpression, options).match(input.toCharArray(), result);
+		assertEquals(mode + " " + regexExpression, start != -1, match);
+		if (match) {
+			assertEquals(mode + " " + regexExpression, start, result.getMatchStartPosition());
+			assertEquals(mode + " " + regexExpression, end - start, result.getMatchLength());
+		}
+	}
+
+	private void assertFindMatchesCount(String message, Regex regex, String input) {
+
+		RegexMatcher matcher = regex.matcher(input);
+		int count = 0;
+		boolean whole = false;
+		while (matcher.find()) {
+			whole |= count == 0 && matcher.start() == 0 && matcher.end() == input.length();
+			count++;
+		}
+		CharBuffer direct = ByteBuffer.allocateDirect(input.length() * 2).asCharBuffer();
+		direct.put(input).flip();
+		CharSequence[] inputs = { input, new StringBuilder(input), CharBuffer.wrap(input.toCharArray()), direct };
+		for (CharSequence sequence : inputs) {
+			assertEquals(message, count > 0, regex.find(sequence));
+			assertEquals(message, whole, regex.matches(sequence));
+			assertEquals(message, count, regex.count(sequence));
+		}
+		assertEquals(message, count, regex.count(input.toCharArray()));
+	}
+
+	private void assertSameMatches(String regexExpression, Regex expected, Regex actual) {
+
+		char[] buffer = data.toCharArray();
+		for (int position = 0; position < buffer.length; position += 7) {
+			RegexMatchResult result1 = new RegexMatchResult();
+			result1.setPosition(position);
+			RegexMatchResult result2 = new RegexMatchResult();
+			result2.setPosition(position);
+			assertEquals(regexExpression, expected.match(buffer, result1), actual.match(buffer, result2));
+			assertEquals(regexExpression, result1.getMatchStartPosition(), result2.getMatchStartPosition());
+			assertEquals(regexExpression, result1.getMatchLength(), result2.getMatchLength());
+		}
+	}
+
+	private void assertSameMatches(String message, Regex regex, CharSequence input) {
+
+		char[] buffer = data.toCharArray();
+		for (int position = 0; position < buffer.length; position += 7) {
+			RegexMatchResult result1 = new RegexMatchResult();
+			result1.setPosition(position);
+			RegexMatchResult result2 = new RegexMatchResult();
+			result2.setPosition(position);
+			assertEquals(message, regex.match(buffer, result1), regex.match(input, result2));
+			assertEquals(message, result1.getMatchStartPosition(), result2.getMatchStartPosition());
+			assertEquals(message, result1.getMatchLength(), result2.getMatchLength());
+		}
+	}
+
 	private void compareMatchExecution(String regexExpression) {
 
 		TestResult result1 = executeJavaRegex(regexExpression);
@@ -0,0 +1,102 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.RegexSet;
+import aleamb.regexengine.RegexSetMatchResult;
+
+public class TestRegexSet {
+
+	@Test
+	public void testMatchEnds() {
+
+		RegexSet set = RegexEngine.compileSet("ab+c", "b+", "x", "a*");
+		RegexSetMatchResult result = new RegexSetMatchResult();
+		assertTrue(set.match("aabbbc".toCharArray(), result));
+
+		assertArrayEquals(new int[] { 0, 1, 3 }, result.getMatchedPatterns());
+		assertEquals(6, result.getMatchEnd(0));
+		assertEquals(3, result.getMatchEnd(1));
+		assertEquals(-1, result.getMatchEnd(2));
+		assertFalse(result.isMatch(2));
+		assertEquals(0, result.getMatchEnd(3));
+	}
+
+	@Test
+	public void testStartPosition() {
+
+		RegexSet set = RegexEngine.compileSet("ab", "c");
+		RegexSetMatchResult result = new RegexSetMatchResult();
+		result.setPosition(1);
+		assertTrue(set.match("abcab".toCharArray(), result));
+		assertEquals(5, result.getMatchEnd(0));
+		assertEquals(3, result.getMatchEnd(1));
+
+		assertFalse(set.match("xyz".toCharArray(), null));
+		assertTrue(set.match("xyzc".toCharArray(), null));
+	}
+
+	@Test
+	public void testSameAsSeparateRegex() throws IOException {
+
+		List<String> patterns = FileUtils.readLines(new File("regex.txt"));
+		List<String> lines = FileUtils.readLines(new File("text.txt"));
+
+		RegexOptions lazy = new RegexOptions();
+		lazy.setExecutionMode(ExecutionMode.LAZY_DFA);
+		lazy.setLazyCacheStates(16);
+
+		RegexSet[] sets = { RegexEngine.compileSet(patterns.toArray(new String[0])),
+				RegexEngine.compileSet(patterns, lazy) };
+		RegexSetMatchResult result = new RegexSetMatchResult();
+
+		for (RegexSet set : sets) {
+			assertEquals(patterns.size(), set.size());
+			for (String line : lines) {
+				char[] buffer = line.toCharArray();
+				set.match(buffer, result);
+				for (int i = 0; i < patterns.size(); i++) {
+					RegexMatchResult single = new RegexMatchResult();
+					Regex regex = RegexEngine.compile(patterns.get(i));
+					assertEquals(patterns.get(i), regex.match(buffer, single), result.isMatch(i));
+					if (result.isMatch(i)) {
+						// first match to end is never after the leftmost-longest one
+						assertTrue(result.getMatchEnd(i) <= single.getMatchStartPosition() + single.getMatchLength());
+					}
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testManyPatterns() {
+
+		List<String> patterns = new ArrayList<String>();
+		for (int i = 0; i < 500; i++) {
+			patterns.add("error" + i + ":[a-z]+");
+		}
+		RegexSet set = RegexEngine.compileSet(patterns, new RegexOptions());
+		RegexSetMatchResult result = new RegexSetMatchResult();
+
+		assertTrue(set.match("2014-02-01 error42:disk error420:net".toCharArray(), result));
+		assertArrayEquals(new int[] { 42, 420 }, result.getMatchedPatterns());
+		assertEquals(20, result.getMatchEnd(42));
+	}
+
+}
@@ -0,0 +1,172 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.MatchTooLongException;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexMatcher;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.StreamMatchHandler;
+
+public class TestStreamMatcher {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testMatchesSameAsMatcher() throws IOException {
+
+		String text = FileUtils.readFileToString(new File("text.txt"));
+		StringBuilder data = new StringBuilder();
+		while (data.length() < 100000) {
+			data.append(text).append(" caña ");
+		}
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("(lorem|ipsum)");
+		expressions.add("[^ ]*");
+
+		for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.DFA, ExecutionMode.LAZY_DFA }) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				Regex regex = RegexEngine.compile(regexExpression, options);
+				assertEquals(mode + " " + regexExpression, matcherMatches(regex, data),
+						streamMatches(regex, new SmallReads(new StringReader(data.toString())), 4096));
+			}
+		}
+	}
+
+	@Test
+	public void testBytesMatchSameAsByteMatch() throws IOException {
+
+		String text = FileUtils.readFileToString(new File("text.txt")) + " caña ñandú ";
+		byte[] data = (text + text + text).getBytes(UTF8);
+
+		for (String regexExpression : new String[] { "[a-z]+", "ñ[a-z]*", "[^ ]+", "a*" }) {
+			Regex regex = RegexEngine.compile(regexExpression);
+
+			List<Long> expected = new ArrayList<Long>();
+			RegexMatchResult result = new RegexMatchResult();
+			int position = 0;
+			while (position <= data.length) {
+				result.setPosition(position);
+				if (!regex.match(data, result)) {
+					break;
+				}
+				int end = result.getMatchStartPosition() + result.getMatchLength();
+				expected.add((long) result.getMatchStartPosition());
+				expected.add((long) end);
+				position = end == result.getMatchStartPosition() ? end + 1 : end;
+			}
+
+			final List<Long> actual = new ArrayList<Long>();
+			regex.streamMatcher(64).scan(new ByteArrayInputStream(data), new StreamMatchHandler() {
+				public boolean onMatch(long start, long end) {
+					actual.add(start);
+					actual.add(end);
+					return true;
+				}
+			});
+			assertEquals(regexExpression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testMatchAcrossChunks() throws IOException {
+
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			data.append("abc").append(i).append(' ');
+		}
+		data.append("abcd");
+		Regex regex = RegexEngine.compile("abcd|bc[0-9]+");
+		List<Long> matches = streamMatches(regex, new SmallReads(new StringReader(data.toString())), 8);
+		assertEquals(2 * 5001, matches.size());
+		assertEquals(Long.valueOf(data.length() - 4), matches.get(matches.size() - 2));
+		assertEquals(Long.valueOf(data.length()), matches.get(matches.size() - 1));
+	}
+
+	@Test(expected = MatchTooLongException.class)
+	public void testMatchTooLong() throws IOException {
+
+		StringBuilder data = new StringBuilder("a");
+		for (int i = 0; i < 20000; i++) {
+			data.append('x');
+		}
+		data.append('b');
+		streamMatches(RegexEngine.compile("a[^b]*b"), new StringReader(data.toString()), 100);
+	}
+
+	@Test
+	public void testStop() throws IOException {
+
+		final List<Long> matches = new ArrayList<Long>();
+		long count = RegexEngine.compile("[0-9]+").streamMatcher().scan(new StringReader("a 1 22 333"),
+				new StreamMatchHandler() {
+					public boolean onMatch(long start, long end) {
+						matches.add(start);
+						return matches.size() < 2;
+					}
+				});
+		assertEquals(2, count);
+		assertEquals(Long.valueOf(4), matches.get(1));
+	}
+
+	private List<Long> matcherMatches(Regex regex, CharSequence data) {
+
+		List<Long> matches = new ArrayList<Long>();
+		RegexMatcher matcher = regex.matcher(data);
+		while (matcher.find()) {
+			matches.add((long) matcher.start());
+			matches.add((long) matcher.end());
+		}
+		return matches;
+	}
+
+	private List<Long> streamMatches(Regex regex, Reader reader, int maxMatchLength) throws IOException {
+
+		final List<Long> matches = new ArrayList<Long>();
+		regex.streamMatcher(maxMatchLength).scan(reader, new StreamMatchHandler() {
+			public boolean onMatch(long start, long end) {
+				matches.add(start);
+				matches.add(end);
+				return true;
+			}
+		});
+		return matches;
+	}
+
+	/*
+	 * Returns a few characters on each read.
+	 */
+	private static class SmallReads extends FilterReader {
+
+		private int size;
+
+		SmallReads(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			size = size % 13 + 1;
+			return super.read(cbuf, off, Math.min(len, size));
+		}
+	}
+
+}
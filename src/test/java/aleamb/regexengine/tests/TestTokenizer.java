@@ -0,0 +1,100 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexOptions;
+import aleamb.regexengine.TokenScanner;
+import aleamb.regexengine.Tokenizer;
+
+public class TestTokenizer {
+
+	static final int KEYWORD = 1;
+	static final int IDENTIFIER = 2;
+	static final int NUMBER = 3;
+	static final int OPERATOR = 4;
+	static final int SPACE = 5;
+
+	static final String[] PATTERNS = { "if|else", "[a-z][a-z0-9]*", "[0-9]+", "=|==|;", "\\s+" };
+	static final int[] TOKEN_IDS = { KEYWORD, IDENTIFIER, NUMBER, OPERATOR, SPACE };
+
+	@Test
+	public void testLongestMatchAndPriority() {
+
+		TokenScanner scanner = RegexEngine.compileTokenizer(PATTERNS, TOKEN_IDS)
+				.scanner("if ifx == 42;".toCharArray());
+
+		assertToken(scanner, KEYWORD, 0, 2);
+		assertToken(scanner, SPACE, 2, 3);
+		assertToken(scanner, IDENTIFIER, 3, 6);
+		assertToken(scanner, SPACE, 6, 7);
+		assertToken(scanner, OPERATOR, 7, 9);
+		assertToken(scanner, SPACE, 9, 10);
+		assertToken(scanner, NUMBER, 10, 12);
+		assertToken(scanner, OPERATOR, 12, 13);
+		assertToken(scanner, Tokenizer.EOF, 13, 13);
+		assertToken(scanner, Tokenizer.EOF, 13, 13);
+	}
+
+	@Test
+	public void testInvalidCharacters() {
+
+		TokenScanner scanner = RegexEngine.compileTokenizer(PATTERNS, TOKEN_IDS).scanner("a#12".toCharArray());
+
+		assertToken(scanner, IDENTIFIER, 0, 1);
+		assertToken(scanner, Tokenizer.INVALID, 1, 2);
+		assertToken(scanner, NUMBER, 2, 4);
+		assertToken(scanner, Tokenizer.EOF, 4, 4);
+	}
+
+	@Test
+	public void testEmptyTokensNotReturned() {
+
+		TokenScanner scanner = RegexEngine.compileTokenizer(new String[] { "a*", "b" }, new int[] { 0, 1 })
+				.scanner("aacb".toCharArray());
+
+		assertToken(scanner, 0, 0, 2);
+		assertToken(scanner, Tokenizer.INVALID, 2, 3);
+		assertToken(scanner, 1, 3, 4);
+		assertToken(scanner, Tokenizer.EOF, 4, 4);
+	}
+
+	@Test
+	public void testLazyMode() {
+
+		RegexOptions options = new RegexOptions();
+		options.setExecutionMode(ExecutionMode.LAZY_DFA);
+		options.setLazyCacheStates(3);
+		Tokenizer lazy = RegexEngine.compileTokenizer(Arrays.asList(PATTERNS), TOKEN_IDS, options);
+		Tokenizer eager = RegexEngine.compileTokenizer(PATTERNS, TOKEN_IDS);
+
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			input.append("if x").append(i).append(" == ").append(i * 31).append(";else y=z").append(i % 7);
+		}
+		TokenScanner expected = eager.scanner(input.toString().toCharArray());
+		TokenScanner actual = lazy.scanner(input.toString().toCharArray());
+		int token;
+		do {
+			token = expected.nextToken();
+			assertToken(actual, token, expected.tokenStart(), expected.tokenEnd());
+		} while (token != Tokenizer.EOF);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeTokenId() {
+		RegexEngine.compileTokenizer(new String[] { "a" }, new int[] { -1 });
+	}
+
+	private void assertToken(TokenScanner scanner, int token, int start, int end) {
+		assertEquals(token, scanner.nextToken());
+		assertEquals(start, scanner.tokenStart());
+		assertEquals(end, scanner.tokenEnd());
+	}
+
+}
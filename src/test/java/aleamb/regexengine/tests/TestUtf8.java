@@ -0,0 +1,128 @@
+package aleamb.regexengine.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import aleamb.regexengine.ExecutionMode;
+import aleamb.regexengine.Regex;
+import aleamb.regexengine.RegexEngine;
+import aleamb.regexengine.RegexMatchResult;
+import aleamb.regexengine.RegexOptions;
+
+public class TestUtf8 {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testMatchesSameAsChars() throws IOException {
+
+		String data = FileUtils.readFileToString(new File("text.txt")) + " caña ñandú €";
+		List<String> expressions = FileUtils.readLines(new File("regex.txt"));
+		expressions.add("[^a-z ]+");
+		expressions.add("ñ[a-z]*");
+		expressions.add("(lorem|ipsum)");
+
+		for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.AUTO, ExecutionMode.LAZY_DFA,
+				ExecutionMode.NFA }) {
+			RegexOptions options = new RegexOptions();
+			options.setExecutionMode(mode);
+			for (String regexExpression : expressions) {
+				assertSameMatches(mode + " " + regexExpression, RegexEngine.compile(regexExpression, options), data);
+			}
+		}
+	}
+
+	@Test
+	public void testMultibyte() {
+
+		assertMatch("[à-ü]+", "caña", 2, 4);
+		assertMatch("a.b", "xa€b", 1, 6);
+		// supplementary character is a single character
+		assertMatch("a.b", "a😀b", 0, 6);
+		assertMatch("a[^x]b", "a😀b", 0, 6);
+		assertMatch("a..b", "a😀b", -1, -1);
+	}
+
+	@Test
+	public void testMalformed() {
+
+		Regex regex = RegexEngine.compile("a.b");
+		assertFalse(regex.match(new byte[] { 'a', (byte) 0x80, 'b' }, new RegexMatchResult()));
+		assertFalse(regex.match(new byte[] { 'a', (byte) 0xC3, 'b' }, new RegexMatchResult()));
+		assertTrue(regex.match(new byte[] { 'a', (byte) 0xC3, (byte) 0xB1, 'b' }, new RegexMatchResult()));
+	}
+
+	@Test
+	public void testByteBuffers() {
+
+		Regex regex = RegexEngine.compile("ñ[a-z]+");
+		byte[] bytes = "xx caña ñandú".getBytes(UTF8);
+
+		ByteBuffer heap = ByteBuffer.wrap(bytes);
+		heap.position(3);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.position(3);
+
+		for (ByteBuffer buffer : new ByteBuffer[] { heap, direct, heap.slice() }) {
+			int position = buffer.position();
+			RegexMatchResult result = new RegexMatchResult();
+			assertTrue(regex.match(buffer, result));
+			assertEquals(2, result.getMatchStartPosition());
+			assertEquals(3, result.getMatchLength());
+
+			result.setPosition(6);
+			assertTrue(regex.match(buffer, result));
+			assertEquals(6, result.getMatchStartPosition());
+			assertEquals(5, result.getMatchLength());
+			assertEquals(position, buffer.position());
+		}
+	}
+
+	private void assertMatch(String regexExpression, String input, int start, int end) {
+
+		RegexMatchResult result = new RegexMatchResult();
+		boolean match = RegexEngine.compile(regexExpression).match(input.getBytes(UTF8), result);
+		assertEquals(regexExpression, start != -1, match);
+		if (match) {
+			assertEquals(regexExpression, start, result.getMatchStartPosition());
+			assertEquals(regexExpression, end - start, result.getMatchLength());
+		}
+	}
+
+	private void assertSameMatches(String message, Regex regex, String data) {
+
+		char[] chars = data.toCharArray();
+		byte[] bytes = data.getBytes(UTF8);
+		for (int position = 0; position < chars.length; position += 7) {
+			RegexMatchResult charResult = new RegexMatchResult();
+			charResult.setPosition(position);
+			RegexMatchResult byteResult = new RegexMatchResult();
+			byteResult.setPosition(byteOffset(data, position));
+
+			boolean match = regex.match(chars, charResult);
+			assertEquals(message, match, regex.match(bytes, byteResult));
+			if (match) {
+				int start = charResult.getMatchStartPosition();
+				int end = start + charResult.getMatchLength();
+				assertEquals(message, byteOffset(data, start), byteResult.getMatchStartPosition());
+				assertEquals(message, byteOffset(data, end) - byteOffset(data, start), byteResult.getMatchLength());
+			}
+		}
+	}
+
+	private int byteOffset(String data, int charOffset) {
+		return data.substring(0, charOffset).getBytes(UTF8).length;
+	}
+
+}